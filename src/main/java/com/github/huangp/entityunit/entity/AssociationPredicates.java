@@ -0,0 +1,58 @@
+package com.github.huangp.entityunit.entity;
+
+import com.github.huangp.entityunit.util.Settable;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import lombok.RequiredArgsConstructor;
+
+import javax.persistence.JoinColumn;
+import javax.persistence.JoinTable;
+import javax.persistence.ManyToMany;
+import javax.persistence.ManyToOne;
+import javax.persistence.OneToMany;
+import javax.persistence.OneToOne;
+import java.lang.reflect.AnnotatedElement;
+
+import static com.github.huangp.entityunit.util.HasAnnotationPredicate.has;
+
+/**
+ * How an EntityClass tells which of its elements are associations of each kind.
+ *
+ * @author Patrick Huang
+ * @see EntityClassProvider
+ */
+@RequiredArgsConstructor
+class AssociationPredicates {
+    final Predicate<? super Settable> manyToOne;
+    // only the ones required to persist the entity as per scan option
+    final Predicate<? super Settable> oneToOne;
+    final Predicate<? super Settable> oneToMany;
+    // only the owning side
+    final Predicate<? super Settable> manyToMany;
+
+    /**
+     * @param scanOption
+     *         whether consider optional OneToOne as required
+     * @return predicates that look at JPA annotations
+     */
+    static AssociationPredicates annotated(ScanOption scanOption) {
+        Predicate<AnnotatedElement> oneToOne;
+        if (scanOption == ScanOption.IgnoreOptionalOneToOne) {
+            oneToOne = Predicates.and(has(OneToOne.class), RequiredOneToOnePredicate.PREDICATE);
+        } else {
+            oneToOne = Predicates.and(has(OneToOne.class), has(JoinColumn.class));
+        }
+        return new AssociationPredicates(has(ManyToOne.class), oneToOne, has(OneToMany.class),
+                Predicates.and(has(ManyToMany.class), has(JoinTable.class)));
+    }
+
+    private static enum RequiredOneToOnePredicate implements Predicate<AnnotatedElement> {
+        PREDICATE;
+
+        @Override
+        public boolean apply(AnnotatedElement input) {
+            OneToOne oneToOne = input.getAnnotation(OneToOne.class);
+            return oneToOne != null && !oneToOne.optional();
+        }
+    }
+}
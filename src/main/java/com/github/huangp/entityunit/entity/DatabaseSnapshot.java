@@ -0,0 +1,199 @@
+package com.github.huangp.entityunit.entity;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * In memory copy of entity tables so that a fixture can be built once and restored between tests.
+ * <p>
+ * Entity tables and their many to many and element collection tables are copied row by row. Restore resets those
+ * tables the same way as EntityCleaner#truncateAll and inserts the rows back in JDBC batches with referential
+ * integrity disabled, so table order doesn't matter.
+ * <pre>
+ * {@code
+ *
+ * // in @BeforeClass after the fixture is persisted and committed
+ * snapshot = DatabaseSnapshot.take(connection, HProject.class, HProjectIteration.class, HDocument.class);
+ *
+ * // in @Before
+ * snapshot.restore(connection);
+ * }
+ * </pre>
+ * A snapshot is immutable and can be restored any number of times.
+ *
+ * @author Patrick Huang
+ * @see EntityCleaner#truncateAll(Connection, Class[])
+ */
+@Slf4j
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+@ToString
+public class DatabaseSnapshot {
+    private static final int BATCH_SIZE = 500;
+
+    private final List<TableCopy> tables;
+
+    /**
+     * @param connection
+     *         JDBC connection
+     * @param entityClasses
+     *         entity classes to copy
+     * @return a snapshot of the entity tables and their many to many and element collection tables
+     */
+    public static DatabaseSnapshot take(Connection connection, Class... entityClasses) {
+        try {
+            ImmutableList.Builder<TableCopy> tables = ImmutableList.builder();
+            Statement statement = connection.createStatement();
+            try {
+                for (String table : EntityCleaner.getTables(entityClasses)) {
+                    tables.add(copy(statement, table));
+                }
+            } finally {
+                statement.close();
+            }
+            return new DatabaseSnapshot(tables.build());
+        } catch (SQLException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    private static TableCopy copy(Statement statement, String table) throws SQLException {
+        ResultSet resultSet = statement.executeQuery("select * from " + table);
+        try {
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            int columnCount = metaData.getColumnCount();
+            List<String> columns = Lists.newArrayListWithCapacity(columnCount);
+            int[] sqlTypes = new int[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                columns.add(metaData.getColumnName(i + 1));
+                sqlTypes[i] = metaData.getColumnType(i + 1);
+            }
+            List<Object[]> rows = Lists.newArrayList();
+            while (resultSet.next()) {
+                Object[] row = new Object[columnCount];
+                for (int i = 0; i < columnCount; i++) {
+                    row[i] = detach(resultSet.getObject(i + 1));
+                }
+                rows.add(row);
+            }
+            log.debug("copied {} rows from {}", rows.size(), table);
+            return new TableCopy(table, ImmutableList.copyOf(columns), sqlTypes, Collections.unmodifiableList(rows));
+        } finally {
+            resultSet.close();
+        }
+    }
+
+    // LOB values are only valid while the result set is open
+    private static Object detach(Object value) throws SQLException {
+        if (value instanceof Clob) {
+            Clob clob = (Clob) value;
+            return clob.getSubString(1, (int) clob.length());
+        }
+        if (value instanceof Blob) {
+            Blob blob = (Blob) value;
+            return blob.getBytes(1, (int) blob.length());
+        }
+        return value;
+    }
+
+    /**
+     * Reset all tables in this snapshot to the state when it was taken.
+     *
+     * @param connection
+     *         JDBC connection. It will not be committed or closed.
+     */
+    public void restore(final Connection connection) {
+        try {
+            final Dialect dialect = Dialect.of(connection);
+            EntityCleaner.withoutConstraints(connection, dialect, new EntityCleaner.ConnectionWork() {
+                @Override
+                public void execute(Statement statement) throws SQLException {
+                    List<String> tableNames = Lists.newArrayListWithCapacity(tables.size());
+                    for (TableCopy table : tables) {
+                        tableNames.add(table.getName());
+                    }
+                    EntityCleaner.truncate(statement, dialect, tableNames);
+                    for (TableCopy table : tables) {
+                        table.insertInto(connection);
+                    }
+                }
+            });
+        } catch (SQLException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    /**
+     * @param table
+     *         table name
+     * @return number of rows copied from given table
+     */
+    public int getRowCount(String table) {
+        for (TableCopy copy : tables) {
+            if (copy.getName().equalsIgnoreCase(table)) {
+                return copy.rows.size();
+            }
+        }
+        throw new IllegalArgumentException("table is not in this snapshot: " + table);
+    }
+
+    @RequiredArgsConstructor
+    @ToString(of = "name")
+    private static class TableCopy {
+        @Getter
+        private final String name;
+        private final List<String> columns;
+        private final int[] sqlTypes;
+        private final List<Object[]> rows;
+
+        private void insertInto(Connection connection) throws SQLException {
+            if (rows.isEmpty()) {
+                return;
+            }
+            String placeholders = Joiner.on(", ").join(Collections.nCopies(columns.size(), "?"));
+            String sql = "insert into " + name + " (" + Joiner.on(", ").join(columns) + ") values (" + placeholders
+                    + ")";
+            PreparedStatement statement = connection.prepareStatement(sql);
+            try {
+                int pending = 0;
+                for (Object[] row : rows) {
+                    for (int i = 0; i < row.length; i++) {
+                        if (row[i] == null) {
+                            statement.setNull(i + 1, sqlTypes[i]);
+                        } else {
+                            statement.setObject(i + 1, row[i]);
+                        }
+                    }
+                    statement.addBatch();
+                    if (++pending == BATCH_SIZE) {
+                        statement.executeBatch();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    statement.executeBatch();
+                }
+                log.debug("restored {} rows into {}", rows.size(), name);
+            } finally {
+                statement.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.github.huangp.entityunit.entity;
+
+import com.github.huangp.entityunit.holder.BeanValueHolder;
+import com.github.huangp.entityunit.util.ClassUtil;
+import com.github.huangp.entityunit.util.Settable;
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Uninterruptibles;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.ManyToOne;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.github.huangp.entityunit.util.HasAnnotationPredicate.has;
+
+/**
+ * Build a dataset of a given shape in parallel.
+ * <p>
+ * Entity types are made in the order they are added. Each type is split into slices and each slice is made, persisted
+ * and committed by a worker with its own EntityManager and transaction. The first slice of each type runs in the
+ * calling thread so that shared depending entities are persisted (and reused by the other slices) only once.
+ * <p>
+ * If a type has a ManyToOne to a type added before it, slices are spread over those entities round robin. For example
+ * 50 HProject, 500 HProjectIteration then 50000 HDocument will give each project 10 iterations and each iteration 100
+ * documents.
+ * <p>
+ * Each slice has an EntityMaker of its own sharing the holder, registry and journal of the given EntityMakerBuilder.
+ * Random values come from a source derived from the seed, the type and the slice index, and numbers in sequences
+ * start from the position of the slice in the dataset. So a seeded dataset is the same every time no matter which
+ * thread makes which slice. Numbers don't carry on from other makers though, so a second dataset in the same
+ * database will repeat them.
+ * <pre>
+ * {@code
+ *
+ * Map<Class<?>, List<Serializable>> ids = DatasetBuilder.builder(entityManagerFactory)
+ *         .add(HProject.class, 50)
+ *         .add(HProjectIteration.class, 500)
+ *         .add(HDocument.class, 50000)
+ *         .build();
+ * }
+ * </pre>
+ * By default a fixed thread pool of one thread per processor is used. Any executor can be given instead, i.e. on
+ * Java 21 {@code Executors.newVirtualThreadPerTaskExecutor()}.
+ *
+ * @author Patrick Huang
+ * @see EntityMaker#makeAndPersistMany(EntityManager, Class, int, int)
+ */
+@Slf4j
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class DatasetBuilder {
+    private static final int DEFAULT_SLICE_SIZE = 1000;
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final EntityMakerBuilder makerBuilder;
+    private final Map<Class<?>, Integer> shape = Maps.newLinkedHashMap();
+    private int sliceSize = DEFAULT_SLICE_SIZE;
+    private int batchSize = EntityMaker.DEFAULT_BATCH_SIZE;
+    private ExecutorService executor;
+
+    /**
+     * @param entityManagerFactory
+     *         entity manager factory for workers to create their own entity manager
+     * @return a dataset builder using default EntityMaker
+     */
+    public static DatasetBuilder builder(EntityManagerFactory entityManagerFactory) {
+        return builder(entityManagerFactory, EntityMakerBuilder.builder());
+    }
+
+    /**
+     * @param entityManagerFactory
+     *         entity manager factory for workers to create their own entity manager
+     * @param makerBuilder
+     *         configured entity maker builder. Each slice will have its own EntityMaker built from it.
+     * @return a dataset builder
+     */
+    public static DatasetBuilder builder(EntityManagerFactory entityManagerFactory, EntityMakerBuilder makerBuilder) {
+        return new DatasetBuilder(entityManagerFactory, makerBuilder);
+    }
+
+    /**
+     * @param entityType
+     *         entity type
+     * @param count
+     *         number of entities to make
+     * @return this
+     */
+    public DatasetBuilder add(Class<?> entityType, int count) {
+        Preconditions.checkArgument(count >= 0, "count must not be negative: %s", count);
+        shape.put(entityType, count);
+        return this;
+    }
+
+    /**
+     * @param sliceSize
+     *         maximum number of entities made and committed in one transaction
+     * @return this
+     */
+    public DatasetBuilder sliceSize(int sliceSize) {
+        Preconditions.checkArgument(sliceSize > 0, "slice size must be positive: %s", sliceSize);
+        this.sliceSize = sliceSize;
+        return this;
+    }
+
+    /**
+     * @param batchSize
+     *         flush and clear entity manager after this many entities are persisted
+     * @return this
+     */
+    public DatasetBuilder batchSize(int batchSize) {
+        Preconditions.checkArgument(batchSize > 0, "batch size must be positive: %s", batchSize);
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * @param executor
+     *         executor to run slices. It will not be shut down.
+     * @return this
+     */
+    public DatasetBuilder executor(ExecutorService executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Make and persist the dataset.
+     *
+     * @return ids of made entities for each type, in the order types are added
+     */
+    public Map<Class<?>, List<Serializable>> build() {
+        BeanValueHolder valueHolder = makerBuilder.getValueHolder();
+        ExecutorService executorService = executor != null ? executor
+                : Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            Map<Class<?>, List<Serializable>> result = Maps.newLinkedHashMap();
+            int typeIndex = 0;
+            for (Map.Entry<Class<?>, Integer> entry : shape.entrySet()) {
+                Class<?> entityType = entry.getKey();
+                Optional<Class<?>> parentType = findParentType(entityType, result.keySet());
+                List<Serializable> parentIds = parentType.isPresent() ? result.get(parentType.get())
+                        : Collections.<Serializable>emptyList();
+                List<Slice> slices = slice(typeIndex++, valueHolder, entityType, entry.getValue(),
+                        parentType.orNull(), parentIds);
+                log.info("making {} {} in {} slices", entry.getValue(), entityType.getSimpleName(), slices.size());
+                result.put(entityType, runSlices(executorService, slices));
+            }
+            return result;
+        } finally {
+            if (executor == null) {
+                executorService.shutdown();
+            }
+        }
+    }
+
+    private static List<Serializable> runSlices(ExecutorService executorService, List<Slice> slices) {
+        List<Serializable> ids = Lists.newArrayList();
+        if (slices.isEmpty()) {
+            return ids;
+        }
+        // first slice persists shared depending entities so others can just reuse them
+        ids.addAll(slices.get(0).call());
+        List<Future<List<Serializable>>> futures = Lists.newArrayListWithCapacity(slices.size() - 1);
+        for (Slice slice : slices.subList(1, slices.size())) {
+            futures.add(executorService.submit(slice));
+        }
+        for (Future<List<Serializable>> future : futures) {
+            try {
+                ids.addAll(Uninterruptibles.getUninterruptibly(future));
+            } catch (ExecutionException e) {
+                throw Throwables.propagate(e.getCause());
+            }
+        }
+        return ids;
+    }
+
+    private List<Slice> slice(int typeIndex, BeanValueHolder valueHolder, Class<?> entityType, int count,
+            Class<?> parentType, List<Serializable> parentIds) {
+        if (count == 0) {
+            return ImmutableList.of();
+        }
+        int numOfSlices = (count + sliceSize - 1) / sliceSize;
+        if (!parentIds.isEmpty()) {
+            // a multiple of parents so that each parent gets about the same number of children
+            int numOfParents = parentIds.size();
+            numOfSlices = Math.min(count, (numOfSlices + numOfParents - 1) / numOfParents * numOfParents);
+        }
+        ImmutableList.Builder<Slice> slices = ImmutableList.builder();
+        long made = 0;
+        for (int i = 0; i < numOfSlices; i++) {
+            int size = count / numOfSlices + (i < count % numOfSlices ? 1 : 0);
+            Serializable parentId = parentIds.isEmpty() ? null : parentIds.get(i % parentIds.size());
+            // keyed by position rather than by thread so that a seeded dataset is reproducible
+            EntityMaker maker = makerBuilder.buildForKey(((long) typeIndex << 32) + i, made + 1);
+            slices.add(new Slice(maker, valueHolder, entityType, size, parentType, parentId));
+            made += size;
+        }
+        return slices.build();
+    }
+
+    // the nearest type added before that the given type has ManyToOne to
+    private static Optional<Class<?>> findParentType(Class<?> entityType, Iterable<Class<?>> madeTypes) {
+        List<Class<?>> referenced = Lists.newArrayList();
+        for (Settable settable : EntityClass.from(entityType).getElements()) {
+            if (has(ManyToOne.class).apply(settable)) {
+                referenced.add(ClassUtil.getRawType(settable.getType()));
+            }
+        }
+        Class<?> parentType = null;
+        for (Class<?> madeType : madeTypes) {
+            if (madeType != entityType && referenced.contains(madeType)) {
+                parentType = madeType;
+            }
+        }
+        return Optional.<Class<?>>fromNullable(parentType);
+    }
+
+    @RequiredArgsConstructor
+    private class Slice implements Callable<List<Serializable>> {
+        private final EntityMaker maker;
+        private final BeanValueHolder valueHolder;
+        private final Class<?> entityType;
+        private final int size;
+        private final Class<?> parentType;
+        private final Serializable parentId;
+
+        @Override
+        public List<Serializable> call() {
+            EntityManager entityManager = entityManagerFactory.createEntityManager();
+            EntityTransaction transaction = entityManager.getTransaction();
+            try {
+                transaction.begin();
+                // made entities are published to other slices only after commit
+                valueHolder.beginScope();
+                try {
+                    if (parentId != null) {
+                        putParent(entityManager, parentType);
+                    }
+                    List<Serializable> ids = maker.makeAndPersistMany(entityManager, entityType, size, batchSize);
+                    transaction.commit();
+                    return ids;
+                } finally {
+                    valueHolder.endScope();
+                }
+            } finally {
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+                entityManager.close();
+            }
+        }
+
+        private <P> void putParent(EntityManager entityManager, Class<P> type) {
+            valueHolder.putIfNotNull(type, entityManager.find(type, parentId));
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.github.huangp.entityunit.entity;
+
+import com.github.huangp.entityunit.util.ClassUtil;
+import com.github.huangp.entityunit.util.Settable;
+import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Queues;
+import com.google.common.collect.Sets;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.jodah.typetools.TypeResolver;
+
+import javax.persistence.Entity;
+import javax.persistence.JoinColumn;
+import javax.persistence.OneToMany;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Entity types an entity depends on (ManyToOne and OneToOne as per scan option), directly or transitively.
+ * <p>
+ * Nodes are indexed by type. The graph is discovered iteratively and sorted with Kahn's algorithm so that each type
+ * comes after all types it depends on. A dependency cycle is reported with its path. Self reference is ignored.
+ *
+ * @author Patrick Huang
+ * @see EntityClassScanner
+ */
+@Slf4j
+class DependencyGraph {
+    @Getter
+    private final Class<?> root;
+    @Getter
+    private final List<EntityClass> sortedDependencies;
+    private final Set<Class<?>> requireNewInstanceTypes;
+
+    private DependencyGraph(Class<?> root, List<EntityClass> sortedDependencies, Set<Class<?>> requireNewInstanceTypes) {
+        this.root = root;
+        this.sortedDependencies = sortedDependencies;
+        this.requireNewInstanceTypes = requireNewInstanceTypes;
+    }
+
+    static DependencyGraph of(Class<?> root, ScanOption scanOption) {
+        return of(root, scanOption, EntityClassProvider.Reflection.INSTANCE);
+    }
+
+    static DependencyGraph of(Class<?> root, ScanOption scanOption, EntityClassProvider provider) {
+        Map<Class<?>, Node> nodes = discover(root, scanOption, provider);
+        List<Node> sorted = sort(nodes);
+
+        ImmutableList.Builder<EntityClass> dependencies = ImmutableList.builder();
+        Set<Class<?>> requireNewInstanceTypes = Sets.newHashSet();
+        for (Node node : sorted) {
+            if (node.type != root) {
+                dependencies.add(node.entityClass);
+            }
+            if (node.requireNewInstance) {
+                requireNewInstanceTypes.add(node.type);
+            }
+        }
+        return new DependencyGraph(root, dependencies.build(), requireNewInstanceTypes);
+    }
+
+    /**
+     * Sort given entity types by foreign keys among them. Types outside the given ones are not considered.
+     * <p>
+     * A type referencing another by ManyToOne or OneToOne with JoinColumn comes after the referenced type. A
+     * unidirectional OneToMany with JoinColumn puts the foreign key on the many side so the element type comes after
+     * the owner. ManyToMany join tables are not considered.
+     *
+     * @param types
+     *         entity types
+     * @return given types, each one after the ones its table references
+     */
+    static List<Class<?>> sortByForeignKeys(Iterable<Class<?>> types) {
+        Map<Class<?>, Node> nodes = Maps.newLinkedHashMap();
+        for (Class<?> type : types) {
+            nodeOf(nodes, type, ScanOption.IncludeOneToOne, EntityClassProvider.Reflection.INSTANCE);
+        }
+        for (Node node : nodes.values()) {
+            for (Settable element : node.entityClass.getDependingElements()) {
+                addEdge(nodes, node.type, ClassUtil.getRawType(element.getType()));
+            }
+            for (Settable element : node.entityClass.getElements()) {
+                OneToMany oneToMany = element.getAnnotation(OneToMany.class);
+                if (oneToMany != null && Strings.isNullOrEmpty(oneToMany.mappedBy())
+                        && element.isAnnotationPresent(JoinColumn.class)) {
+                    addEdge(nodes, elementType(element, oneToMany.targetEntity()), node.type);
+                }
+            }
+        }
+        List<Class<?>> sorted = Lists.newArrayListWithCapacity(nodes.size());
+        for (Node node : sort(nodes)) {
+            sorted.add(node.type);
+        }
+        return sorted;
+    }
+
+    private static void addEdge(Map<Class<?>, Node> nodes, Class<?> from, Class<?> to) {
+        Node node = nodes.get(from);
+        Node dependency = nodes.get(to);
+        if (node != null && dependency != null && node != dependency && node.dependencies.add(dependency)) {
+            dependency.dependents.add(node);
+        }
+    }
+
+    private static Class<?> elementType(Settable element, Class<?> targetEntity) {
+        if (targetEntity != void.class) {
+            return targetEntity;
+        }
+        if (ClassUtil.isMap(element.getType())) {
+            return TypeResolver.resolveRawArguments(element.getType(), Map.class)[1];
+        }
+        return TypeResolver.resolveRawArgument(element.getType(), Collection.class);
+    }
+
+    /**
+     * @param type
+     *         a depending type
+     * @return true if any entity in the graph references given type by OneToOne thus requires a new instance
+     */
+    boolean isRequireNewInstance(Class<?> type) {
+        return requireNewInstanceTypes.contains(type);
+    }
+
+    private static Map<Class<?>, Node> discover(Class<?> root, ScanOption scanOption, EntityClassProvider provider) {
+        Map<Class<?>, Node> nodes = Maps.newLinkedHashMap();
+        Deque<Node> toScan = Queues.newArrayDeque();
+        toScan.push(nodeOf(nodes, root, scanOption, provider));
+
+        while (!toScan.isEmpty()) {
+            Node node = toScan.pop();
+            log.debug("scanning class: {}", node.type);
+            for (Settable element : node.entityClass.getDependingElements()) {
+                Class<?> dependingType = ClassUtil.getRawType(element.getType());
+                if (dependingType == node.type) {
+                    continue;
+                }
+                boolean discovered = nodes.containsKey(dependingType);
+                Node dependency = nodeOf(nodes, dependingType, scanOption, provider);
+                dependency.requireNewInstance |= node.entityClass.isOneToOne(element);
+                addEdge(nodes, node.type, dependingType);
+                if (!discovered) {
+                    toScan.push(dependency);
+                }
+            }
+        }
+        return nodes;
+    }
+
+    private static Node nodeOf(Map<Class<?>, Node> nodes, Class<?> type, ScanOption scanOption,
+            EntityClassProvider provider) {
+        Node node = nodes.get(type);
+        if (node == null) {
+            Preconditions.checkState(type.isAnnotationPresent(Entity.class), "This scans only entity class: %s", type);
+            node = new Node(type, provider.get(type, scanOption));
+            nodes.put(type, node);
+        }
+        return node;
+    }
+
+    private static List<Node> sort(Map<Class<?>, Node> nodes) {
+        Map<Node, Integer> inDegrees = Maps.newHashMap();
+        Deque<Node> ready = Queues.newArrayDeque();
+        for (Node node : nodes.values()) {
+            inDegrees.put(node, node.dependencies.size());
+            if (node.dependencies.isEmpty()) {
+                ready.add(node);
+            }
+        }
+        List<Node> sorted = Lists.newArrayListWithCapacity(nodes.size());
+        while (!ready.isEmpty()) {
+            Node node = ready.poll();
+            sorted.add(node);
+            for (Node dependent : node.dependents) {
+                int inDegree = inDegrees.get(dependent) - 1;
+                inDegrees.put(dependent, inDegree);
+                if (inDegree == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+        if (sorted.size() < nodes.size()) {
+            throw new IllegalStateException("dependency cycle found: " + findCycle(inDegrees));
+        }
+        return sorted;
+    }
+
+    // every node left with in degree has at least one dependency left. Keep following them until we come back.
+    private static String findCycle(Map<Node, Integer> inDegrees) {
+        Node current = null;
+        for (Map.Entry<Node, Integer> entry : inDegrees.entrySet()) {
+            if (entry.getValue() > 0) {
+                current = entry.getKey();
+                break;
+            }
+        }
+        List<Node> path = Lists.newArrayList();
+        Map<Node, Integer> indexInPath = Maps.newHashMap();
+        while (!indexInPath.containsKey(current)) {
+            indexInPath.put(current, path.size());
+            path.add(current);
+            for (Node dependency : current.dependencies) {
+                if (inDegrees.get(dependency) > 0) {
+                    current = dependency;
+                    break;
+                }
+            }
+        }
+        List<Node> cycle = Lists.newArrayList(path.subList(indexInPath.get(current), path.size()));
+        cycle.add(current);
+        return Joiner.on(" -> ").join(cycle);
+    }
+
+    private static class Node {
+        private final Class<?> type;
+        private final EntityClass entityClass;
+        private final Set<Node> dependencies = Sets.newLinkedHashSet();
+        private final List<Node> dependents = Lists.newArrayList();
+        private boolean requireNewInstance;
+
+        private Node(Class<?> type, EntityClass entityClass) {
+            this.type = type;
+            this.entityClass = entityClass;
+        }
+
+        @Override
+        public String toString() {
+            return type.getSimpleName();
+        }
+    }
+}
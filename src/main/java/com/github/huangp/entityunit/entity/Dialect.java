@@ -0,0 +1,116 @@
+package com.github.huangp.entityunit.entity;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Database specific statements used to reset tables fast, and what Hibernate's native id generator (used for
+ * GenerationType.AUTO) is on the database.
+ *
+ * @author Patrick Huang
+ * @see EntityCleaner#truncateAll(Connection, Class[])
+ * @see IdAllocator
+ */
+enum Dialect {
+    H2("H2") {
+        @Override
+        Optional<String> disableConstraints() {
+            return Optional.of("SET REFERENTIAL_INTEGRITY FALSE");
+        }
+
+        @Override
+        Optional<String> enableConstraints() {
+            return Optional.of("SET REFERENTIAL_INTEGRITY TRUE");
+        }
+    },
+    HSQLDB("HSQL Database Engine") {
+        @Override
+        Optional<String> disableConstraints() {
+            return Optional.of("SET DATABASE REFERENTIAL INTEGRITY FALSE");
+        }
+
+        @Override
+        Optional<String> enableConstraints() {
+            return Optional.of("SET DATABASE REFERENTIAL INTEGRITY TRUE");
+        }
+    },
+    MYSQL("MySQL") {
+        @Override
+        Optional<String> disableConstraints() {
+            return Optional.of("SET FOREIGN_KEY_CHECKS = 0");
+        }
+
+        @Override
+        Optional<String> enableConstraints() {
+            return Optional.of("SET FOREIGN_KEY_CHECKS = 1");
+        }
+    },
+    POSTGRESQL("PostgreSQL") {
+        // foreign keys among truncated tables are fine if they are truncated in one statement
+        @Override
+        List<String> truncate(Collection<String> tables) {
+            return ImmutableList.of("TRUNCATE TABLE " + Joiner.on(", ").join(tables));
+        }
+
+        // native generator is a sequence
+        @Override
+        boolean nativeIdIsIdentity() {
+            return false;
+        }
+    };
+
+    private final String productName;
+
+    Dialect(String productName) {
+        this.productName = productName;
+    }
+
+    static Dialect of(Connection connection) throws SQLException {
+        Optional<Dialect> dialect = find(connection);
+        if (!dialect.isPresent()) {
+            throw new UnsupportedOperationException("fast reset is not supported for database: "
+                    + connection.getMetaData().getDatabaseProductName());
+        }
+        return dialect.get();
+    }
+
+    static Optional<Dialect> find(Connection connection) throws SQLException {
+        String productName = connection.getMetaData().getDatabaseProductName();
+        for (Dialect dialect : values()) {
+            if (dialect.productName.equalsIgnoreCase(productName)) {
+                return Optional.of(dialect);
+            }
+        }
+        return Optional.absent();
+    }
+
+    /**
+     * @return whether Hibernate's native id generator uses identity columns on this database
+     */
+    boolean nativeIdIsIdentity() {
+        return true;
+    }
+
+    Optional<String> disableConstraints() {
+        return Optional.absent();
+    }
+
+    Optional<String> enableConstraints() {
+        return Optional.absent();
+    }
+
+    List<String> truncate(Collection<String> tables) {
+        List<String> statements = Lists.newArrayListWithCapacity(tables.size());
+        for (String table : tables) {
+            statements.add("TRUNCATE TABLE " + table);
+        }
+        return statements;
+    }
+}
@@ -5,36 +5,23 @@ import com.github.huangp.entityunit.util.Settable;
 import com.github.huangp.entityunit.util.SettableField;
 import com.github.huangp.entityunit.util.SettableProperty;
 import com.google.common.base.Function;
-import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
-import com.google.common.base.Throwables;
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
-import lombok.Setter;
 import lombok.ToString;
 
-import javax.persistence.JoinColumn;
-import javax.persistence.JoinTable;
-import javax.persistence.ManyToMany;
-import javax.persistence.ManyToOne;
-import javax.persistence.OneToMany;
-import javax.persistence.OneToOne;
 import javax.persistence.Transient;
 import java.beans.PropertyDescriptor;
-import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Field;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
 
 import static com.github.huangp.entityunit.util.ClassUtil.getInstanceFields;
 import static com.github.huangp.entityunit.util.ClassUtil.getPropertyDescriptors;
@@ -89,36 +76,28 @@ import static com.google.common.collect.Lists.newArrayList;
 @ToString(of = "type")
 @EqualsAndHashCode(of = {"type", "scanOption"})
 public class EntityClass {
-    private static final Cache<CacheKey, EntityClass> CACHE = CacheBuilder.newBuilder()
-            .maximumSize(100)
-            .build();
-
-    private Predicate<AnnotatedElement> oneToOnePredicate;
     @Getter
     private final Class type;
     private final ScanOption scanOption;
+    private final EntityClassProvider provider;
+    private final AssociationPredicates associations;
     @Getter
     private final Iterable<Settable> elements;
 
-    @Getter
-    @Setter
-    private boolean requireNewInstance;
-
     private transient Iterable<EntityClass> requiredEntityTypes;
+    private transient Iterable<Settable> dependingElements;
     private transient Iterable<Settable> associationGetters;
     private transient Iterable<Settable> manyToManyGetters;
 
-    private EntityClass(Class type, Iterable<Settable> elements, ScanOption scanOption) {
+    EntityClass(Class type, Iterable<Settable> elements, ScanOption scanOption, EntityClassProvider provider,
+            AssociationPredicates associations) {
         this.type = type;
         this.scanOption = scanOption;
+        this.provider = provider;
+        this.associations = associations;
         List<Settable> settables = newArrayList(elements);
         Collections.sort(settables, NameComparator.COMPARATOR);
         this.elements = ImmutableList.copyOf(settables);
-        if (scanOption == ScanOption.IgnoreOptionalOneToOne) {
-            oneToOnePredicate = Predicates.and(has(OneToOne.class), RequiredOneToOnePredicate.PREDICATE);
-        } else {
-            oneToOnePredicate = Predicates.and(has(OneToOne.class), has(JoinColumn.class));
-        }
     }
 
     public static EntityClass from(final Class clazz) {
@@ -135,16 +114,12 @@ public class EntityClass {
      * @return a wrapper for the entity class
      */
     public static EntityClass from(final Class clazz, final ScanOption scanOption) {
-        try {
-            return CACHE.get(CacheKey.of(clazz, scanOption), new Callable<EntityClass>() {
-                @Override
-                public EntityClass call() throws Exception {
-                    return createEntityClass(clazz, scanOption);
-                }
-            });
-        } catch (ExecutionException e) {
-            throw Throwables.propagate(e);
-        }
+        return MetadataCache.ENTITY_CLASSES.get(clazz, scanOption, new Callable<EntityClass>() {
+            @Override
+            public EntityClass call() throws Exception {
+                return createEntityClass(clazz, scanOption);
+            }
+        });
     }
 
     private static EntityClass createEntityClass(Class rootClass, ScanOption scanOption) {
@@ -155,7 +130,8 @@ public class EntityClass {
             superClass = superClass.getSuperclass();
         }
         Iterable<Settable> elements = Iterables.filter(settables, Predicates.not(has(Transient.class)));
-        return new EntityClass(rootClass, elements, scanOption);
+        return new EntityClass(rootClass, elements, scanOption, EntityClassProvider.Reflection.INSTANCE,
+                AssociationPredicates.annotated(scanOption));
     }
 
     private static List<Settable> getSettables(Class rootClass, Class targetClass) {
@@ -186,19 +162,29 @@ public class EntityClass {
      */
     public Iterable<EntityClass> getDependingEntityTypes() {
         if (requiredEntityTypes == null) {
-            Iterable<EntityClass> manyToOne = transform(filter(elements, has(ManyToOne.class)), new TypeFunction(scanOption, false));
-            Iterable<EntityClass> oneToOne = transform(filter(elements, oneToOnePredicate), new TypeFunction(scanOption, true));
-            requiredEntityTypes = Iterables.concat(manyToOne, oneToOne);
+            requiredEntityTypes = transform(getDependingElements(), new TypeFunction(provider, scanOption));
         }
         return requiredEntityTypes;
     }
 
+    /**
+     * @return ManyToOne and OneToOne (as per scan option) elements that reference other entities required to persist
+     * this entity
+     */
+    public Iterable<Settable> getDependingElements() {
+        if (dependingElements == null) {
+            dependingElements = Iterables.concat(filter(elements, associations.manyToOne),
+                    filter(elements, associations.oneToOne));
+        }
+        return dependingElements;
+    }
+
     /**
      * @return elements that will return associations (OneToMany collections)
      */
     public Iterable<Settable> getContainingEntitiesElements() {
         if (associationGetters == null) {
-            associationGetters = filter(elements, has(OneToMany.class));
+            associationGetters = filter(elements, associations.oneToMany);
         }
         return associationGetters;
     }
@@ -208,11 +194,20 @@ public class EntityClass {
      */
     public Iterable<Settable> getManyToMany() {
         if (manyToManyGetters == null) {
-            manyToManyGetters = filter(getElements(), Predicates.and(has(ManyToMany.class), has(JoinTable.class)));
+            manyToManyGetters = filter(getElements(), associations.manyToMany);
         }
         return manyToManyGetters;
     }
 
+    /**
+     * @param element
+     *         one of the depending elements
+     * @return true if the element is a OneToOne mapping
+     */
+    boolean isOneToOne(Settable element) {
+        return associations.oneToOne.apply(element);
+    }
+
     private static enum NameComparator implements Comparator<Settable> {
         COMPARATOR;
 
@@ -224,24 +219,12 @@ public class EntityClass {
 
     @RequiredArgsConstructor
     private static class TypeFunction implements Function<Settable, EntityClass> {
+        private final EntityClassProvider provider;
         private final ScanOption scanOption;
-        private final boolean requireNewInstance;
 
         @Override
         public EntityClass apply(Settable input) {
-            EntityClass entityClass = EntityClass.from(ClassUtil.getRawType(input.getType()), scanOption);
-            entityClass.setRequireNewInstance(requireNewInstance);
-            return entityClass;
-        }
-    }
-
-    private static enum RequiredOneToOnePredicate implements Predicate<AnnotatedElement> {
-        PREDICATE;
-
-        @Override
-        public boolean apply(AnnotatedElement input) {
-            OneToOne oneToOne = input.getAnnotation(OneToOne.class);
-            return oneToOne != null && !oneToOne.optional();
+            return provider.get(ClassUtil.getRawType(input.getType()), scanOption);
         }
     }
 
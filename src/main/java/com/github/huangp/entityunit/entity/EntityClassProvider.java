@@ -0,0 +1,32 @@
+package com.github.huangp.entityunit.entity;
+
+/**
+ * Source of EntityClass.
+ * <p>
+ * By default EntityClass is worked out from reflection and JPA annotations. Alternatively it can come from JPA
+ * Metamodel. Only dependency scanning goes through the provider. Other code calls EntityClass.from directly.
+ *
+ * @author Patrick Huang
+ * @see MetamodelEntityClassProvider
+ * @see EntityMakerBuilder#useMetamodel(javax.persistence.EntityManagerFactory)
+ */
+interface EntityClassProvider {
+
+    /**
+     * @param entityType
+     *         entity class
+     * @param scanOption
+     *         whether consider optional OneToOne as required
+     * @return EntityClass of the given type
+     */
+    EntityClass get(Class<?> entityType, ScanOption scanOption);
+
+    static enum Reflection implements EntityClassProvider {
+        INSTANCE;
+
+        @Override
+        public EntityClass get(Class<?> entityType, ScanOption scanOption) {
+            return EntityClass.from(entityType, scanOption);
+        }
+    }
+}
@@ -1,99 +1,63 @@
 package com.github.huangp.entityunit.entity;
 
-import com.google.common.base.Optional;
-import com.google.common.base.Preconditions;
-import com.google.common.base.Predicate;
-import com.google.common.base.Throwables;
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Iterables;
-import com.google.common.collect.Lists;
 import lombok.extern.slf4j.Slf4j;
 
-import javax.persistence.Entity;
-import java.lang.annotation.Annotation;
-import java.util.List;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
 
 /**
+ * Scans what entities are required to persist an entity and in which order they should be made.
+ * <p>
+ * Result is a DependencyGraph cached per root class and scan option in MetadataCache.
+ *
  * @author Patrick Huang
+ * @see DependencyGraph
  */
 @Slf4j
 class EntityClassScanner {
-    private static Cache<CacheKey, Iterable<EntityClass>> cache = CacheBuilder.newBuilder()
-            .maximumSize(100)
-            .build();
     private final ScanOption scanOption;
+    private final EntityClassProvider provider;
+    private final MetadataCache<DependencyGraph> graphs;
 
     public EntityClassScanner(ScanOption scanOption) {
+        this(scanOption, EntityClassProvider.Reflection.INSTANCE);
+    }
+
+    /**
+     * @param scanOption
+     *         scan option
+     * @param provider
+     *         source of EntityClass. Results from other than reflection are cached by this scanner only as they may
+     *         differ.
+     */
+    EntityClassScanner(ScanOption scanOption, EntityClassProvider provider) {
         this.scanOption = scanOption;
+        this.provider = provider;
+        if (provider == EntityClassProvider.Reflection.INSTANCE) {
+            graphs = MetadataCache.DEPENDENCY_GRAPHS;
+        } else {
+            graphs = new MetadataCache<DependencyGraph>();
+        }
     }
 
     public EntityClassScanner() {
         this(ScanOption.IgnoreOptionalOneToOne);
     }
 
+    /**
+     * @param clazz
+     *         root entity class
+     * @return all entity classes the root class depends on, each one after the ones it depends on
+     */
     public Iterable<EntityClass> scan(final Class clazz) {
-        try {
-            return cache.get(CacheKey.of(clazz, scanOption), new Callable<Iterable<EntityClass>>() {
-                @Override
-                public Iterable<EntityClass> call() throws Exception {
-                    return doRealScan(clazz);
-                }
-            });
-        } catch (ExecutionException e) {
-            throw Throwables.propagate(e);
-        }
-    }
-
-    private Iterable<EntityClass> doRealScan(Class clazz) {
-        List<EntityClass> current = Lists.newArrayList();
-        recursiveScan(clazz, current);
-        return ImmutableList.copyOf(current);
-    }
-
-    private void recursiveScan(final Class clazz, List<EntityClass> current) {
-        String classUnderScan = clazz.getName();
-        log.debug("scanning class: {}", classUnderScan);
-
-        Annotation entityAnnotation = clazz.getAnnotation(Entity.class);
-        Preconditions.checkState(entityAnnotation != null, "This scans only entity class");
-
-        EntityClass startNode = getOrCreateNode(current, clazz);
-        if (current.contains(startNode)) {
-            log.trace("{} has been scanned", startNode);
-            return;
-        }
-        Iterable<EntityClass> dependingTypes = startNode.getDependingEntityTypes();
-
-        for (EntityClass dependingType : dependingTypes) {
-            if (!dependingType.getType().equals(clazz)) {
-                recursiveScan(dependingType.getType(), current);
-            }
-        }
-        //      Iterable<EntityClass> dependents = Iterables.transform(dependingTypes, new Function<Class<?>, EntityClass>()
-        //      {
-        //         @Override
-        //         public EntityClass apply(Class<?> input)
-        //         {
-        //            return EntityClass.from(input, scanOption);
-        //         }
-        //      });
-
-        Iterables.addAll(current, dependingTypes);
-        current.remove(startNode); // remove itself
+        return graphOf(clazz).getSortedDependencies();
     }
 
-    private EntityClass getOrCreateNode(List<EntityClass> current, final Class<?> entityType) {
-        Optional<EntityClass> dependingOptional = Iterables.tryFind(current, new Predicate<EntityClass>() {
+    DependencyGraph graphOf(final Class<?> clazz) {
+        return graphs.get(clazz, scanOption, new Callable<DependencyGraph>() {
             @Override
-            public boolean apply(EntityClass input) {
-                return input.getType() == entityType;
+            public DependencyGraph call() throws Exception {
+                return DependencyGraph.of(clazz, scanOption, provider);
             }
         });
-        return dependingOptional.isPresent() ? dependingOptional.get() : EntityClass.from(entityType, scanOption);
     }
-
 }
@@ -4,21 +4,44 @@ import com.github.huangp.entityunit.util.ClassUtil;
 import com.github.huangp.entityunit.util.HasAnnotationPredicate;
 import com.github.huangp.entityunit.util.Settable;
 import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Multimaps;
+import com.google.common.collect.Ordering;
+import com.google.common.collect.Sets;
 import lombok.extern.slf4j.Slf4j;
+import org.jodah.typetools.TypeResolver;
 
+import javax.persistence.CollectionTable;
 import javax.persistence.ElementCollection;
 import javax.persistence.EntityManager;
 import javax.persistence.Id;
+import javax.persistence.JoinColumn;
 import javax.persistence.JoinTable;
 import javax.persistence.ManyToMany;
 import javax.persistence.Query;
 import java.io.Serializable;
+import java.lang.reflect.AnnotatedElement;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
 
 import static com.github.huangp.entityunit.util.HasAnnotationPredicate.has;
 import static com.google.common.base.Predicates.and;
@@ -33,17 +56,158 @@ import static com.google.common.collect.Iterables.transform;
  */
 @Slf4j
 public final class EntityCleaner {
+    /**
+     * Maximum number of ids bound into one in or not in list.
+     */
+    static final int MAX_IN_LIST_SIZE = 500;
+    // ManyToMany and ElementCollection with their own table
+    private static final Predicate<AnnotatedElement> ASSOCIATION_TABLE =
+            or(and(or(has(ManyToMany.class), has(ElementCollection.class)), has(JoinTable.class)),
+                    and(has(ElementCollection.class), has(CollectionTable.class)));
+    private static final Ordering<Class<?>> BY_NAME = Ordering.<String>natural().onResultOf(new Function<Class<?>, String>() {
+        @Override
+        public String apply(Class<?> input) {
+            return input.getName();
+        }
+    });
+
+    // ids of one column are of the same type but compare them by value to be safe
+    private static final Comparator<Serializable> NUMERIC_ORDER = new Comparator<Serializable>() {
+        @Override
+        public int compare(Serializable o1, Serializable o2) {
+            return new BigDecimal(o1.toString()).compareTo(new BigDecimal(o2.toString()));
+        }
+    };
+
     private EntityCleaner() {
     }
 
+    /**
+     * Delete all records from given entity representing tables and their many to many and element collection tables.
+     * <p>
+     * The entity classes can be given in any order. Many to many and element collection tables of all given classes
+     * are deleted first. Then entity tables are deleted in an order worked out from foreign keys among given classes,
+     * which is cached for the same set of classes.
+     *
+     * @param entityManager
+     *         entity manager
+     * @param entityClasses
+     *         entity classes in any order
+     * @throws IllegalStateException
+     *         if given classes reference each other in a cycle
+     */
+    public static void deleteAll(EntityManager entityManager, Class... entityClasses) {
+        List<Class> deleteOrder = deleteOrder(entityClasses);
+        // join tables reference both sides so they go before any entity table
+        Set<String> associationTables = Sets.newLinkedHashSet();
+        for (Class entityType : deleteOrder) {
+            Iterables.addAll(associationTables, getAssociationTables(EntityClass.from(entityType)));
+        }
+        for (String table : associationTables) {
+            deleteTable(entityManager, table);
+        }
+        for (Class entityType : deleteOrder) {
+            deleteEntity(entityManager, ClassUtil.getEntityName(entityType));
+        }
+    }
 
-    static void deleteAll(EntityManager entityManager, Class... entityClasses) {
-        for (Class clazz : entityClasses) {
-            EntityClass entityClass = EntityClass.from(clazz, ScanOption.IncludeOneToOne);
+    /**
+     * Fast reset of given entity representing tables and their many to many and element collection tables.
+     * <p>
+     * Referential integrity is disabled, all tables are truncated in one batch and then referential integrity is
+     * restored. Rows don't go through the transaction log one by one so this is much faster than deleteAll for large
+     * tables. Supports H2, HSQLDB, MySQL and PostgreSQL. Note that TRUNCATE commits implicitly on some databases.
+     *
+     * @param connection
+     *         JDBC connection. It will not be committed or closed.
+     * @param entityClasses
+     *         entity classes in any order
+     * @throws UnsupportedOperationException
+     *         if the database is not supported
+     */
+    public static void truncateAll(Connection connection, Class... entityClasses) {
+        final Set<String> tables = getTables(entityClasses);
+        try {
+            final Dialect dialect = Dialect.of(connection);
+            withoutConstraints(connection, dialect, new ConnectionWork() {
+                @Override
+                public void execute(Statement statement) throws SQLException {
+                    truncate(statement, dialect, tables);
+                }
+            });
+        } catch (SQLException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    /**
+     * @return entity tables and their many to many and element collection tables
+     */
+    static Set<String> getTables(Class... entityClasses) {
+        Set<String> tables = Sets.newLinkedHashSet();
+        for (Class entityType : entityClasses) {
+            EntityClass entityClass = EntityClass.from(entityType);
+            Iterables.addAll(tables, getAssociationTables(entityClass));
+            tables.add(TableMapping.tableName(entityType));
+        }
+        return tables;
+    }
 
+    static void truncate(Statement statement, Dialect dialect, Iterable<String> tables) throws SQLException {
+        for (String sql : dialect.truncate(ImmutableList.copyOf(tables))) {
+            statement.addBatch(sql);
         }
-        //TODO giving entity classes in arbitrary order and this can sort it out
-        throw new UnsupportedOperationException("Implement me!");
+        statement.executeBatch();
+        log.debug("truncated tables: {}", tables);
+    }
+
+    /**
+     * Run work with referential integrity disabled and restore it afterwards.
+     */
+    static void withoutConstraints(Connection connection, Dialect dialect, ConnectionWork work) throws SQLException {
+        Statement statement = connection.createStatement();
+        try {
+            execute(statement, dialect.disableConstraints());
+            try {
+                work.execute(statement);
+            } finally {
+                execute(statement, dialect.enableConstraints());
+            }
+        } finally {
+            statement.close();
+        }
+    }
+
+    private static void execute(Statement statement, Optional<String> sql) throws SQLException {
+        if (sql.isPresent()) {
+            statement.execute(sql.get());
+        }
+    }
+
+    interface ConnectionWork {
+        void execute(Statement statement) throws SQLException;
+    }
+
+    private static List<Class> deleteOrder(Class... entityClasses) {
+        Set<Class<?>> key = ImmutableSet.<Class<?>>copyOf(entityClasses);
+        if (key.isEmpty()) {
+            return ImmutableList.of();
+        }
+        ConcurrentMap<Set<Class<?>>, List<Class>> orders = MetadataCache.DELETE_ORDERS.get(BY_NAME.min(key),
+                ScanOption.IncludeOneToOne, new Callable<ConcurrentMap<Set<Class<?>>, List<Class>>>() {
+                    @Override
+                    public ConcurrentMap<Set<Class<?>>, List<Class>> call() throws Exception {
+                        return Maps.newConcurrentMap();
+                    }
+                });
+        List<Class> order = orders.get(key);
+        if (order == null) {
+            // referencing tables go first
+            order = ImmutableList.copyOf(Lists.reverse(Lists.<Class>newArrayList(DependencyGraph.sortByForeignKeys(key))));
+            log.debug("delete order for {}: {}", key, order);
+            orders.putIfAbsent(key, order);
+        }
+        return order;
     }
 
     /**
@@ -74,7 +238,11 @@ public final class EntityCleaner {
      * Delete all records from given entity representing tables except exclusion. Exclusion are given as entity object.
      * So a match on id will be used.
      * <p>
-     * TODO manyToMany and element collection table do not consider exlusion yet
+     * Many to many and element collection rows are kept if the owning entity is excluded and, for many to many, the
+     * other side is either excluded or not being deleted. Up to {@link EntityCleaner#MAX_IN_LIST_SIZE} excluded ids
+     * are bound into one not in list. Larger numeric exclusion is deleted range by range with one chunk of ids per
+     * statement, so no statement goes over database parameter limits. Larger non numeric exclusion reads the ids in
+     * the table first and deletes the rest in chunks.
      *
      * @param entityManager
      *         entity manager
@@ -86,6 +254,7 @@ public final class EntityCleaner {
     public static void deleteAllExcept(EntityManager entityManager, Iterable<Class> entityClasses, Object... excludedEntities) {
         if (excludedEntities.length == 0) {
             deleteAll(entityManager, entityClasses);
+            return;
         }
         ImmutableListMultimap<Class, Object> exclusion = Multimaps.index(ImmutableSet.copyOf(excludedEntities), new Function<Object, Class>() {
             @Override
@@ -93,25 +262,63 @@ public final class EntityCleaner {
                 return input.getClass();
             }
         });
+        Set<Class> toDelete = ImmutableSet.copyOf(entityClasses);
 
         for (Class entityType : entityClasses) {
             EntityClass entityClass = EntityClass.from(entityType);
-            Iterable<String> manyToManyTables = getAssociationTables(entityClass);
+            List<Serializable> ids = getIds(exclusion.get(entityType), getIdSettable(entityType));
 
-            Settable idSettable = Iterables.find(entityClass.getElements(), HasAnnotationPredicate.has(Id.class));
-            List<Serializable> ids = getIds(exclusion.get(entityType), idSettable);
+            for (Settable element : filter(entityClass.getElements(), ASSOCIATION_TABLE)) {
+                deleteAssociationExcept(entityManager, element, ids, toDelete, exclusion);
+            }
+            deleteEntityExcept(entityManager, entityType, ids);
+        }
+    }
 
-            for (String table : manyToManyTables) {
-                // TODO need to consider exclusion as well
-                deleteTable(entityManager, table);
+    private static void deleteAssociationExcept(EntityManager entityManager, Settable element,
+            List<Serializable> ownerIds, Set<Class> toDelete, ImmutableListMultimap<Class, Object> exclusion) {
+        JoinTable joinTable = element.getAnnotation(JoinTable.class);
+        String table = joinTable != null ? joinTable.name() : element.getAnnotation(CollectionTable.class).name();
+        JoinColumn[] joinColumns = joinTable != null ? joinTable.joinColumns()
+                : element.getAnnotation(CollectionTable.class).joinColumns();
+        Optional<String> joinColumn = joinColumnName(table, joinColumns);
+        if (!joinColumn.isPresent()) {
+            deleteTable(entityManager, table);
+            return;
+        }
+        deleteExcept(entityManager, table, joinColumn.get(), ownerIds, true);
+
+        ManyToMany manyToMany = element.getAnnotation(ManyToMany.class);
+        if (manyToMany != null) {
+            Class<?> targetType = manyToMany.targetEntity() != void.class ? manyToMany.targetEntity()
+                    : TypeResolver.resolveRawArgument(element.getType(), Collection.class);
+            if (toDelete.contains(targetType)) {
+                Optional<String> inverseJoinColumn = joinColumnName(table, joinTable.inverseJoinColumns());
+                if (!inverseJoinColumn.isPresent()) {
+                    deleteTable(entityManager, table);
+                    return;
+                }
+                List<Serializable> targetIds = getIds(exclusion.get(targetType), getIdSettable(targetType));
+                deleteExcept(entityManager, table, inverseJoinColumn.get(), targetIds, true);
             }
-            // TODO element collection
-            deleteEntityExcept(entityManager, entityType.getSimpleName(), exclusion.get(entityType), idSettable, ids);
         }
+    }
 
+    /**
+     * Selective delete on a join table needs its join column. Callers fall back to delete the whole table if it's
+     * absent.
+     *
+     * @return name of the only join column if it's named explicitly
+     */
+    static Optional<String> joinColumnName(String table, JoinColumn[] joinColumns) {
+        if (joinColumns.length != 1 || Strings.isNullOrEmpty(joinColumns[0].name())) {
+            log.warn("join column is not named explicitly. All rows in {} will be deleted", table);
+            return Optional.absent();
+        }
+        return Optional.of(joinColumns[0].name());
     }
 
-    private static void deleteTable(EntityManager entityManager, String table) {
+    static void deleteTable(EntityManager entityManager, String table) {
         String sqlString = "delete from " + table;
         Query nativeQuery = entityManager.createNativeQuery(sqlString);
         int result = nativeQuery.executeUpdate();
@@ -124,27 +331,110 @@ public final class EntityCleaner {
         log.debug("execute [{}], affected row: {}", queryString, result);
     }
 
-    private static void deleteEntityExcept(EntityManager entityManager, String name, List<Object> exclusion, Settable idSettable, List<Serializable> ids) {
-        if (exclusion.isEmpty()) {
+    private static void deleteEntityExcept(EntityManager entityManager, Class entityType, List<Serializable> ids) {
+        String name = ClassUtil.getEntityName(entityType);
+        if (ids.isEmpty()) {
             deleteEntity(entityManager, name);
             return;
         }
-        String queryString = String.format("delete %s e where e.%s not in (:excludedIds)", name, idSettable.getSimpleName());
-        int result = entityManager.createQuery(queryString).setParameter("excludedIds", ids).executeUpdate();
-        log.debug("executed [{}], affected row: {}", queryString, result);
+        deleteExcept(entityManager, name + " e", "e." + getIdSettable(entityType).getSimpleName(), ids, false);
+    }
+
+    /**
+     * Delete rows whose column value is not in given ids. No statement binds more than MAX_IN_LIST_SIZE + 2 ids.
+     * <p>
+     * Large numeric exclusion is sorted and split into chunks. Each chunk deletes rows between the previous chunk's
+     * last id and its own last id that are not in the chunk, and a last statement deletes rows after the last id.
+     * Other ids can't rely on database ordering so the ids in the table are read and the rest deleted in chunks.
+     *
+     * @param nativeSql
+     *         whether table and column are SQL or JPQL
+     */
+    private static void deleteExcept(EntityManager entityManager, String table, String column,
+            List<Serializable> excludedIds, boolean nativeSql) {
+        if (excludedIds.isEmpty()) {
+            String queryString = "delete from " + table;
+            int result = createQuery(entityManager, queryString, nativeSql).executeUpdate();
+            log.debug("execute [{}], affected row: {}", queryString, result);
+            return;
+        }
+        if (excludedIds.size() <= MAX_IN_LIST_SIZE) {
+            String queryString = String.format("delete from %s where %s not in (:excludedIds)", table, column);
+            int result = createQuery(entityManager, queryString, nativeSql)
+                    .setParameter("excludedIds", excludedIds).executeUpdate();
+            log.debug("executed [{}], affected row: {}", queryString, result);
+            return;
+        }
+        if (Iterables.all(excludedIds, Predicates.instanceOf(Number.class))) {
+            deleteExceptByRange(entityManager, table, column, excludedIds, nativeSql);
+        } else {
+            deleteExceptBySelect(entityManager, table, column, excludedIds, nativeSql);
+        }
+    }
+
+    private static void deleteExceptByRange(EntityManager entityManager, String table, String column,
+            List<Serializable> excludedIds, boolean nativeSql) {
+        List<Serializable> sorted = Lists.newArrayList(excludedIds);
+        Collections.sort(sorted, NUMERIC_ORDER);
+        List<List<Serializable>> chunks = Lists.partition(sorted, MAX_IN_LIST_SIZE);
+        String first = String.format("delete from %s where %s <= :high and %s not in (:excludedIds)", table, column,
+                column);
+        String between = String.format("delete from %s where %s > :low and %s <= :high and %s not in (:excludedIds)",
+                table, column, column, column);
+        int result = 0;
+        Serializable low = null;
+        for (List<Serializable> chunk : chunks) {
+            Serializable high = chunk.get(chunk.size() - 1);
+            Query query = createQuery(entityManager, low == null ? first : between, nativeSql)
+                    .setParameter("high", high).setParameter("excludedIds", chunk);
+            if (low != null) {
+                query.setParameter("low", low);
+            }
+            result += query.executeUpdate();
+            low = high;
+        }
+        String last = String.format("delete from %s where %s > :low", table, column);
+        result += createQuery(entityManager, last, nativeSql).setParameter("low", low).executeUpdate();
+        log.debug("deleted from {} in {} ranges, affected row: {}", table, chunks.size() + 1, result);
+    }
+
+    private static void deleteExceptBySelect(EntityManager entityManager, String table, String column,
+            List<Serializable> excludedIds, boolean nativeSql) {
+        Set<Serializable> excluded = ImmutableSet.copyOf(excludedIds);
+        List<Object> toDelete = Lists.newArrayList();
+        List<?> existing = createQuery(entityManager, String.format("select distinct %s from %s", column, table),
+                nativeSql).getResultList();
+        for (Object id : existing) {
+            if (id != null && !excluded.contains(id)) {
+                toDelete.add(id);
+            }
+        }
+        String queryString = String.format("delete from %s where %s in (:ids)", table, column);
+        int result = 0;
+        for (List<Object> chunk : Lists.partition(toDelete, MAX_IN_LIST_SIZE)) {
+            result += createQuery(entityManager, queryString, nativeSql).setParameter("ids", chunk).executeUpdate();
+        }
+        log.debug("executed [{}] in chunks, affected row: {}", queryString, result);
+    }
+
+    private static Query createQuery(EntityManager entityManager, String queryString, boolean nativeSql) {
+        return nativeSql ? entityManager.createNativeQuery(queryString) : entityManager.createQuery(queryString);
+    }
+
+    private static Settable getIdSettable(Class entityType) {
+        return Iterables.find(EntityClass.from(entityType).getElements(), HasAnnotationPredicate.has(Id.class));
     }
 
     /**
      * This will find all ManyToMany and ElementCollection annotated tables.
      */
     private static Iterable<String> getAssociationTables(EntityClass entityClass) {
-        Iterable<Settable> association = filter(entityClass.getElements(),
-                and(or(has(ManyToMany.class), has(ElementCollection.class)), has(JoinTable.class)));
+        Iterable<Settable> association = filter(entityClass.getElements(), ASSOCIATION_TABLE);
         return transform(association, new Function<Settable, String>() {
             @Override
             public String apply(Settable input) {
                 JoinTable annotation = input.getAnnotation(JoinTable.class);
-                return annotation.name();
+                return annotation != null ? annotation.name() : input.getAnnotation(CollectionTable.class).name();
             }
         });
     }
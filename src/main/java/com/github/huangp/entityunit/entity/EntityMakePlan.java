@@ -0,0 +1,79 @@
+package com.github.huangp.entityunit.entity;
+
+import com.github.huangp.entityunit.util.ClassUtil;
+import com.github.huangp.entityunit.util.Settable;
+import com.google.common.collect.ImmutableList;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import org.jodah.typetools.TypeResolver;
+
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Compiled steps to make an asking entity.
+ * <p>
+ * It contains depending entity types in making order (as sorted by DependencyGraph) and how made entities are
+ * wired back to the one side of OneToMany associations. Generic element types are resolved once at compile time.
+ * It's immutable so can be shared between threads.
+ *
+ * @author Patrick Huang
+ * @see EntityClassScanner
+ * @see EntityMakerImpl
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+@ToString(of = "askingType")
+class EntityMakePlan {
+    private final Class<?> askingType;
+    private final List<DependingEntity> dependingEntities;
+    private final List<WireStep> wireSteps;
+
+    static EntityMakePlan compile(Class<?> askingType, DependencyGraph graph) {
+        ImmutableList.Builder<DependingEntity> entities = ImmutableList.builder();
+        ImmutableList.Builder<WireStep> wireSteps = ImmutableList.builder();
+        for (EntityClass entityNode : graph.getSortedDependencies()) {
+            entities.add(new DependingEntity(entityNode.getType(), graph.isRequireNewInstance(entityNode.getType())));
+            for (Settable element : entityNode.getContainingEntitiesElements()) {
+                Type elementType = element.getType();
+                if (ClassUtil.isCollection(elementType)) {
+                    Class<?> genericType = TypeResolver.resolveRawArgument(elementType, Collection.class);
+                    wireSteps.add(new WireStep(entityNode.getType(), element, false, null, genericType));
+                }
+                if (ClassUtil.isMap(elementType)) {
+                    Class<?>[] genericTypes = TypeResolver.resolveRawArguments(elementType, Collection.class);
+                    wireSteps.add(new WireStep(entityNode.getType(), element, true, genericTypes[0], genericTypes[1]));
+                }
+            }
+        }
+        return new EntityMakePlan(askingType, entities.build(), wireSteps.build());
+    }
+
+    /**
+     * A depending entity type and whether a new instance is required each time (i.e. required OneToOne).
+     */
+    @Getter
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    @ToString
+    static class DependingEntity {
+        private final Class type;
+        private final boolean requireNewInstance;
+    }
+
+    /**
+     * Add made many side entity to the one side collection or map.
+     */
+    @Getter
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    @ToString
+    static class WireStep {
+        private final Class<?> ownerType;
+        private final Settable element;
+        private final boolean map;
+        private final Class<?> keyType;
+        private final Class<?> valueType;
+    }
+}
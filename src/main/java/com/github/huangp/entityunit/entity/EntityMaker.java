@@ -1,14 +1,33 @@
 package com.github.huangp.entityunit.entity;
 
 import javax.persistence.EntityManager;
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.List;
 
 /**
  * Maker for making and persisting entities.
+ * <p>
+ * A built maker can be shared between threads. Each make call sees a stable set of reused entities: what it takes
+ * from BeanValueHolder is pinned for the rest of the call and what it makes only becomes visible to other threads
+ * once the call returns (for makeAndPersistMany and makeAndInsertMany that is after the whole batch). Sequence makers
+ * never hand out the same value twice. IntervalValuesMaker and RangeValuesMaker don't skip values either. Number
+ * sequences hand out blocks of numbers per thread, so with several threads the numbers are neither in order nor
+ * gap free (a thread's unused part of its block is skipped).
+ * It does not make EntityManager nor JdbcEntityWriter thread safe, each thread should use its own. Reused entities
+ * shared between threads should be persisted and committed before other threads reference them.
  *
  * @author Patrick Huang
  * @see EntityMakerBuilder
  */
 public interface EntityMaker {
+    /**
+     * Default number of entities persisted between each flush and clear.
+     *
+     * @see EntityMaker#makeAndPersistMany(EntityManager, Class, int)
+     */
+    int DEFAULT_BATCH_SIZE = 50;
+
     /**
      * Make the given type of entity and all entities that it depends(references) and then persist.
      * It also make sure associations are populated accordingly.
@@ -62,6 +81,118 @@ public interface EntityMaker {
      */
     <T> T makeAndPersist(EntityManager entityManager, Class<T> entityType, Callback callback);
 
+    /**
+     * Make and persist many entities of the given type in one go.
+     * <p>
+     * Depending entities are made once and reused just like calling
+     * {@link EntityMaker#makeAndPersist(EntityManager, Class)} repeatedly. The entity manager is flushed and cleared
+     * every {@link EntityMaker#DEFAULT_BATCH_SIZE} entities so that the persistence context won't keep growing.
+     * Only the ids are returned. Use {@link EntityManager#find(Class, Object)} if you need the managed instance.
+     *
+     * @param entityManager
+     *         entity manager that know about the entity
+     * @param entityType
+     *         entity type
+     * @param count
+     *         number of asking entities to make
+     * @param <T>
+     *         entity type
+     * @return ids of the made and persisted entities in making order
+     * @see EntityMaker#makeAndPersistMany(EntityManager, Class, int, int)
+     */
+    <T> List<Serializable> makeAndPersistMany(EntityManager entityManager, Class<T> entityType, int count);
+
+    /**
+     * Similar to {@link EntityMaker#makeAndPersistMany(EntityManager, Class, int)} with custom batch size.
+     * <p>
+     * After each flush and clear, reused depending entities are re-loaded so that they are managed again.
+     *
+     * @param entityManager
+     *         entity manager that know about the entity
+     * @param entityType
+     *         entity type
+     * @param count
+     *         number of asking entities to make
+     * @param batchSize
+     *         flush and clear entity manager after this many asking entities are persisted
+     * @param <T>
+     *         entity type
+     * @return ids of the made and persisted entities in making order
+     */
+    <T> List<Serializable> makeAndPersistMany(EntityManager entityManager, Class<T> entityType, int count, int batchSize);
+
+    /**
+     * Make many entities of the given type and insert them with the JDBC writer instead of EntityManager.
+     * <p>
+     * Depending entities are made once and reused just like
+     * {@link EntityMaker#makeAndPersistMany(EntityManager, Class, int)}. Ids are assigned by the writer.
+     * OneToMany collections of the reused entities are not populated since the foreign key is on the many side.
+     * Pending rows are flushed before returning.
+     *
+     * @param writer
+     *         JDBC writer
+     * @param entityType
+     *         entity type
+     * @param count
+     *         number of asking entities to make
+     * @param <T>
+     *         entity type
+     * @return ids of the made and inserted entities in making order
+     * @see JdbcEntityWriter
+     */
+    <T> List<Serializable> makeAndInsertMany(JdbcEntityWriter writer, Class<T> entityType, int count);
+
+    /**
+     * Lazily make entities of the given type. A new entity is made each time next() is called on the returned
+     * iterator and it never ends.
+     * <p>
+     * Entities it depends on are taken from BeanValueHolder (or made once and put there). Required OneToOne entities
+     * are made new each time and can be reached from the returned entity. Nothing is persisted and OneToMany
+     * collections of the reused entities are not populated so memory usage stays the same no matter how many are
+     * pulled. Persist the depending entities first if the consumer won't cascade to them.
+     * <pre>
+     * {@code
+     *
+     * HDocument document = maker.makeAndPersist(entityManager, HDocument.class);
+     * for (HTextFlow textFlow : ImmutableList.copyOf(Iterators.limit(maker.stream(HTextFlow.class), 1000))) {
+     *     // all text flows belong to the same document
+     *     entityManager.persist(textFlow);
+     * }
+     * }
+     * </pre>
+     *
+     * @param entityType
+     *         entity type
+     * @param <T>
+     *         entity type
+     * @return an infinite iterator of made entities
+     */
+    <T> Iterator<T> stream(Class<T> entityType);
+
+    /**
+     * Delete exactly the rows this maker has written since the journal was last rolled back.
+     * <p>
+     * Reusable entities that are deleted will not be reused any more.
+     *
+     * @param entityManager
+     *         entity manager with an active transaction
+     * @throws IllegalStateException
+     *         if no write journal is given to EntityMakerBuilder
+     * @see WriteJournal
+     * @see EntityMakerBuilder#journal(WriteJournal)
+     */
+    void rollbackJournal(EntityManager entityManager);
+
+    /**
+     * Make numeric fields of made entities start from 1 again.
+     * <p>
+     * Each field/property has its own sequence. Without a reset a new maker carries on after the numbers other makers
+     * in the JVM handed out. After a reset numbers may clash with rows made before.
+     *
+     * @see com.github.huangp.entityunit.maker.Sequences
+     */
+    void resetSequences();
+
     /**
      * Provide callback functionality before and after persistence.
      *
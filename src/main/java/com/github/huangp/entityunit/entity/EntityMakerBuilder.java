@@ -3,13 +3,22 @@ package com.github.huangp.entityunit.entity;
 import com.github.huangp.entityunit.holder.BeanValueHolder;
 import com.github.huangp.entityunit.maker.Maker;
 import com.github.huangp.entityunit.maker.PreferredValueMakersRegistry;
+import com.github.huangp.entityunit.maker.RandomValueSource;
+import com.github.huangp.entityunit.maker.ValueSource;
+import com.github.huangp.entityunit.maker.Sequences;
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
 import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.metamodel.EntityType;
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Builder for EntityMaker.
@@ -27,6 +36,10 @@ public class EntityMakerBuilder {
     private ScanOption scanOption = ScanOption.IgnoreOptionalOneToOne;
     private BeanValueHolder valueHolder = new BeanValueHolder();
     private PreferredValueMakersRegistry registry = new PreferredValueMakersRegistry();
+    private WriteJournal journal;
+    private ValueSource valueSource = RandomValueSource.DEFAULT;
+    private Set<Class<?>> prewarmTypes = Sets.newLinkedHashSet();
+    private EntityClassProvider entityClassProvider = EntityClassProvider.Reflection.INSTANCE;
 
     /**
      * This is the default option. When making entities, unless there is reusable entity, optional OneToOne mapped entity will be ignored.
@@ -132,6 +145,97 @@ public class EntityMakerBuilder {
         return this;
     }
 
+    /**
+     * Record every entity the built EntityMaker persists or inserts so that they can be deleted afterwards.
+     *
+     * @param journal
+     *         write journal
+     * @return this
+     * @see EntityMaker#rollbackJournal(javax.persistence.EntityManager)
+     */
+    public EntityMakerBuilder journal(WriteJournal journal) {
+        this.journal = journal;
+        return this;
+    }
+
+    /**
+     * Use given source for random strings, numbers and current date.
+     *
+     * @param valueSource
+     *         value source
+     * @return this
+     * @see RandomValueSource#seeded(long)
+     */
+    public EntityMakerBuilder valueSource(ValueSource valueSource) {
+        this.valueSource = valueSource;
+        return this;
+    }
+
+    /**
+     * Make reproducible values from given seed. Values are only reproducible when the maker is used from one thread,
+     * or by DatasetBuilder which gives each slice values of its own.
+     *
+     * @param seed
+     *         seed
+     * @return this
+     * @see RandomValueSource#seeded(long)
+     */
+    public EntityMakerBuilder seed(long seed) {
+        return valueSource(RandomValueSource.seeded(seed));
+    }
+
+    /**
+     * Work out entity dependencies from JPA Metamodel instead of scanning annotations. Mappings in orm.xml and
+     * provider defaults will be honored when deciding which entities to make and in what order.
+     * <p>
+     * This covers dependency discovery only. Making bean values, wiring associations (i.e. WireManyToManyCallback),
+     * FixIdCallback, EntityCleaner, WriteJournal, TableMapping and IdAllocator still read JPA annotations. The owning
+     * side of OneToOne and ManyToMany still comes from mappedBy annotations.
+     *
+     * @param entityManagerFactory
+     *         entity manager factory
+     * @return this
+     * @see MetamodelEntityClassProvider
+     */
+    public EntityMakerBuilder useMetamodel(EntityManagerFactory entityManagerFactory) {
+        entityClassProvider = new MetamodelEntityClassProvider(entityManagerFactory.getMetamodel());
+        return this;
+    }
+
+    /**
+     * Build metadata of all entities managed by the persistence unit when EntityMaker is built.
+     *
+     * @param entityManagerFactory
+     *         entity manager factory
+     * @return this
+     * @see #prewarm(Class[])
+     */
+    public EntityMakerBuilder prewarm(EntityManagerFactory entityManagerFactory) {
+        for (EntityType<?> entityType : entityManagerFactory.getMetamodel().getEntities()) {
+            prewarmTypes.add(entityType.getJavaType());
+        }
+        return this;
+    }
+
+    /**
+     * Build metadata (entity class, dependency scan result and make plan) of given entity types and their
+     * dependencies in parallel when EntityMaker is built, so that the first make of each type won't pay for
+     * reflection.
+     *
+     * @param types
+     *         entity types
+     * @return this
+     */
+    public EntityMakerBuilder prewarm(Class<?>... types) {
+        prewarmTypes.addAll(Arrays.asList(types));
+        return this;
+    }
+
+    // the holder given to built EntityMaker
+    BeanValueHolder getValueHolder() {
+        return valueHolder;
+    }
+
     /**
      * @return EntityMaker
      */
@@ -139,8 +243,19 @@ public class EntityMakerBuilder {
 
         log.debug("registry: {}", registry);
         log.debug("bean value holder: {}", valueHolder);
-        EntityClassScanner scanner = new EntityClassScanner(scanOption);
-        MakeContext context = new MakeContext(valueHolder, registry);
-        return new EntityMakerImpl(scanner, context);
+        EntityClassScanner scanner = new EntityClassScanner(scanOption, entityClassProvider);
+        MakeContext context = new MakeContext(valueHolder, registry, valueSource);
+        new MetadataWarmer(scanner, context).warm(prewarmTypes);
+        return new EntityMakerImpl(scanner, context, false, Optional.fromNullable(journal));
+    }
+
+    // a maker for one unit of work sharing holder, registry and journal but not values: a RandomValueSource is derived
+    // from the key and sequences have private counters starting at given number
+    EntityMaker buildForKey(long key, long sequenceStart) {
+        ValueSource source = valueSource instanceof RandomValueSource
+                ? ((RandomValueSource) valueSource).derive(key) : valueSource;
+        EntityClassScanner scanner = new EntityClassScanner(scanOption, entityClassProvider);
+        MakeContext context = new MakeContext(valueHolder, registry, source, Sequences.startingAt(sequenceStart));
+        return new EntityMakerImpl(scanner, context, false, Optional.fromNullable(journal));
     }
 }
@@ -5,19 +5,25 @@ import com.github.huangp.entityunit.maker.BeanMaker;
 import com.github.huangp.entityunit.util.ClassUtil;
 import com.github.huangp.entityunit.util.Settable;
 import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Queues;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.jodah.typetools.TypeResolver;
 
 import javax.persistence.EntityManager;
 import java.io.Serializable;
-import java.lang.reflect.Type;
 import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * @author Patrick Huang
@@ -27,17 +33,20 @@ class EntityMakerImpl implements EntityMaker {
     private final EntityClassScanner scanner;
     private final MakeContext context;
     private final BeanValueHolder valueHolder;
-    private static boolean warnings = false;
+    private final ConcurrentMap<Class<?>, EntityMakePlan> plans = Maps.newConcurrentMap();
+    private final boolean warnings;
+    private final Optional<WriteJournal> journal;
 
     EntityMakerImpl(EntityClassScanner scanner, MakeContext context) {
+        this(scanner, context, false, Optional.<WriteJournal>absent());
+    }
+
+    EntityMakerImpl(EntityClassScanner scanner, MakeContext context, boolean warn, Optional<WriteJournal> journal) {
         this.scanner = scanner;
         this.context = context;
         valueHolder = context.getBeanValueHolder();
-    }
-
-    EntityMakerImpl(EntityClassScanner scanner, MakeContext context, boolean warn) {
-        this(scanner, context);
         warnings = warn;
+        this.journal = journal;
     }
 
     @Override
@@ -47,43 +56,186 @@ class EntityMakerImpl implements EntityMaker {
 
     @Override
     public <T> T makeAndPersist(EntityManager entityManager, Class<T> entityType, Callback callback) {
-        Iterable<Object> allObjects = getRequiredEntitiesFor(entityType);
+        valueHolder.beginScope();
+        try {
+            Iterable<Object> allObjects = getRequiredEntitiesFor(entityType);
+            // callback may persist entities itself so take the flags before it runs
+            List<Boolean> unsaved = unsavedFlags(allObjects);
+
+            Iterable<Object> toPersist = callback.beforePersist(entityManager, allObjects);
+            persistInOrder(entityManager, toPersist);
+            Iterable<Object> toReturn = callback.afterPersist(entityManager, toPersist);
+            // callback may replace persisted entities (i.e. FixIdCallback) so record what it returns
+            record(Iterables.size(toReturn) == unsaved.size() ? toReturn : allObjects, unsaved);
+
+            return ClassUtil.findEntity(toReturn, entityType);
+        } finally {
+            valueHolder.endScope();
+        }
+    }
+
+    @Override
+    public <T> List<Serializable> makeAndPersistMany(EntityManager entityManager, Class<T> entityType, int count) {
+        return makeAndPersistMany(entityManager, entityType, count, DEFAULT_BATCH_SIZE);
+    }
+
+    @Override
+    public <T> List<Serializable> makeAndPersistMany(EntityManager entityManager, Class<T> entityType, int count, int batchSize) {
+        Preconditions.checkArgument(count >= 0, "count must not be negative: %s", count);
+        Preconditions.checkArgument(batchSize > 0, "batch size must be positive: %s", batchSize);
+
+        EntityMakePlan plan = getPlan(entityType);
+        List<Serializable> ids = Lists.newArrayListWithCapacity(count);
+        // reused entities are managed by this entity manager so keep them to this thread until we finish
+        valueHolder.beginScope();
+        try {
+            // reusable entities may come from another entity manager
+            reattachReusableEntities(entityManager, plan);
+            for (int i = 1; i <= count; i++) {
+                Deque<Object> allObjects = getRequiredEntitiesFor(plan, true);
+                List<Boolean> unsaved = unsavedFlags(allObjects);
+                persistInOrder(entityManager, allObjects);
+                record(allObjects, unsaved);
+
+                // asking entity is always the last one in queue
+                Object askingEntity = allObjects.peekLast();
+                ids.add(ClassUtil.getIdentityField(askingEntity).<Serializable>valueIn(askingEntity));
+
+                if (i % batchSize == 0 || i == count) {
+                    entityManager.flush();
+                    entityManager.clear();
+                    reattachReusableEntities(entityManager, plan);
+                }
+            }
+        } finally {
+            valueHolder.endScope();
+        }
+        return ids;
+    }
+
+    @Override
+    public <T> List<Serializable> makeAndInsertMany(JdbcEntityWriter writer, Class<T> entityType, int count) {
+        Preconditions.checkArgument(count >= 0, "count must not be negative: %s", count);
+
+        EntityMakePlan plan = getPlan(entityType);
+        List<Serializable> ids = Lists.newArrayListWithCapacity(count);
+        valueHolder.beginScope();
+        try {
+            for (int i = 0; i < count; i++) {
+                // no need to wire one to many side. Otherwise reused entities will hold every made entity in memory
+                Deque<Object> allObjects = getRequiredEntitiesFor(plan, false);
+                for (Object entity : allObjects) {
+                    if (ClassUtil.isUnsaved(entity)) {
+                        writer.write(entity);
+                        if (journal.isPresent()) {
+                            journal.get().record(entity);
+                        }
+                    }
+                }
+                Object askingEntity = allObjects.peekLast();
+                ids.add(ClassUtil.getIdentityField(askingEntity).<Serializable>valueIn(askingEntity));
+            }
+            writer.flush();
+        } finally {
+            valueHolder.endScope();
+        }
+        return ids;
+    }
+
+    @Override
+    public <T> Iterator<T> stream(final Class<T> entityType) {
+        final EntityMakePlan plan = getPlan(entityType);
+        return new AbstractIterator<T>() {
+            @Override
+            protected T computeNext() {
+                valueHolder.beginScope();
+                try {
+                    // asking entity is always the last one in queue
+                    return entityType.cast(getRequiredEntitiesFor(plan, false).peekLast());
+                } finally {
+                    valueHolder.endScope();
+                }
+            }
+        };
+    }
+
+    @Override
+    public void resetSequences() {
+        context.getSequences().reset();
+    }
 
-        Iterable<Object> toPersist = callback.beforePersist(entityManager, allObjects);
-        persistInOrder(entityManager, toPersist);
-        Iterable<Object> toReturn = callback.afterPersist(entityManager, toPersist);
+    @Override
+    public void rollbackJournal(EntityManager entityManager) {
+        Preconditions.checkState(journal.isPresent(), "no write journal is given to EntityMakerBuilder");
+        Map<Class<?>, List<Serializable>> recorded = journal.get().getRecorded();
+        journal.get().rollback(entityManager);
+        // deleted entities must not be reused
+        for (Class<?> entityType : recorded.keySet()) {
+            Optional<?> reusable = valueHolder.tryGet(entityType);
+            if (reusable.isPresent() && !ClassUtil.isUnsaved(reusable.get())) {
+                Serializable id = ClassUtil.getIdentityField(reusable.get()).valueIn(reusable.get());
+                if (recorded.get(entityType).contains(id)) {
+                    valueHolder.remove(entityType);
+                }
+            }
+        }
+    }
+
+    private List<Boolean> unsavedFlags(Iterable<Object> entities) {
+        List<Boolean> unsaved = Lists.newArrayList();
+        if (journal.isPresent()) {
+            for (Object entity : entities) {
+                unsaved.add(ClassUtil.isUnsaved(entity));
+            }
+        }
+        return unsaved;
+    }
 
-        return ClassUtil.findEntity(toReturn, entityType);
+    private void record(Iterable<Object> entities, List<Boolean> unsaved) {
+        if (!journal.isPresent()) {
+            return;
+        }
+        int index = 0;
+        for (Object entity : entities) {
+            if (unsaved.get(index++)) {
+                journal.get().record(entity);
+            }
+        }
+    }
+
+    private EntityMakePlan getPlan(Class<?> askingClass) {
+        EntityMakePlan plan = plans.get(askingClass);
+        if (plan == null) {
+            plan = EntityMakePlan.compile(askingClass, scanner.graphOf(askingClass));
+            EntityMakePlan existing = plans.putIfAbsent(askingClass, plan);
+            if (existing != null) {
+                plan = existing;
+            }
+        }
+        return plan;
     }
 
     private Iterable<Object> getRequiredEntitiesFor(Class askingClass) {
-        Iterable<EntityClass> dependingEntities = scanner.scan(askingClass);
-        Queue<Object> queue = Queues.newLinkedBlockingQueue();
+        return getRequiredEntitiesFor(getPlan(askingClass), true);
+    }
+
+    private Deque<Object> getRequiredEntitiesFor(EntityMakePlan plan, boolean wireManySide) {
+        Class askingClass = plan.getAskingType();
+        Deque<Object> queue = Queues.newArrayDeque();
 
         // create all depending (ManyToOne or required OneToOne) entities
-        for (EntityClass entityClass : dependingEntities) {
-            reuseOrMakeNew(queue, entityClass);
+        for (EntityMakePlan.DependingEntity dependingEntity : plan.getDependingEntities()) {
+            reuseOrMakeNew(queue, dependingEntity);
         }
         // we always make new asking class
         Serializable askingEntity = new BeanMaker<Serializable>(askingClass, context).value();
 
-        context.getBeanValueHolder().putIfNotNull(askingClass, askingEntity);
+        valueHolder.putIfNotNull(askingClass, askingEntity);
         queue.offer(askingEntity);
 
         // now work backwards to fill in the one to many side
-        for (EntityClass entityNode : dependingEntities) {
-            Object entity = valueHolder.tryGet(entityNode.getType()).get();
-
-            Iterable<Settable> elements = entityNode.getContainingEntitiesElements();
-            for (Settable element : elements) {
-                Type returnType = element.getType();
-                if (ClassUtil.isCollection(returnType)) {
-                    addManySideEntityIfExists(entity, element, valueHolder);
-                }
-                if (ClassUtil.isMap(returnType)) {
-                    putManySideEntityIfExists(entity, element, valueHolder);
-                }
-            }
+        if (wireManySide) {
+            wireManySide(plan);
         }
         // required OneToOne mapping should have been set on entity creation
         // @see SingleEntityMaker
@@ -93,17 +245,49 @@ class EntityMakerImpl implements EntityMaker {
         return queue;
     }
 
-    private void reuseOrMakeNew(Queue<Object> queue, EntityClass entityClass) {
-        Optional existing = valueHolder.tryGet(entityClass.getType());
-        if (!entityClass.isRequireNewInstance() && existing.isPresent()) {
+    private void wireManySide(EntityMakePlan plan) {
+        for (EntityMakePlan.WireStep wireStep : plan.getWireSteps()) {
+            Object entity = valueHolder.tryGet(wireStep.getOwnerType()).get();
+            if (wireStep.isMap()) {
+                putManySideEntityIfExists(entity, wireStep, valueHolder);
+            } else {
+                addManySideEntityIfExists(entity, wireStep, valueHolder);
+            }
+        }
+    }
+
+    private void reuseOrMakeNew(Queue<Object> queue, EntityMakePlan.DependingEntity dependingEntity) {
+        Optional existing = valueHolder.tryGet(dependingEntity.getType());
+        if (!dependingEntity.isRequireNewInstance() && existing.isPresent()) {
             queue.offer(existing.get());
         } else {
-            Serializable entity = new BeanMaker<Serializable>(entityClass.getType(), context).value();
-            context.getBeanValueHolder().putIfNotNull(entityClass.getType(), entity);
+            Serializable entity = new BeanMaker<Serializable>(dependingEntity.getType(), context).value();
+            valueHolder.putIfNotNull(dependingEntity.getType(), entity);
             queue.offer(entity);
         }
     }
 
+    /**
+     * Once the entity manager is cleared, all reusable entities in value holder become detached.
+     * We replace them with managed ones so that later made entities can still reference (and cascade to) them.
+     * Same applies to reusable entities persisted by another entity manager (i.e. in another thread).
+     */
+    private void reattachReusableEntities(EntityManager entityManager, EntityMakePlan plan) {
+        reattach(entityManager, plan.getAskingType());
+        for (EntityMakePlan.DependingEntity dependingEntity : plan.getDependingEntities()) {
+            reattach(entityManager, dependingEntity.getType());
+        }
+    }
+
+    private <T> void reattach(EntityManager entityManager, Class<T> entityType) {
+        Optional<T> existing = valueHolder.tryGet(entityType);
+        if (!existing.isPresent() || ClassUtil.isUnsaved(existing.get())) {
+            return;
+        }
+        Object id = ClassUtil.getIdentityField(existing.get()).valueIn(existing.get());
+        valueHolder.putIfNotNull(entityType, entityManager.find(entityType, id));
+    }
+
     private static void persistInOrder(EntityManager entityManager, Iterable<Object> queue) {
         for (Object entity : queue) {
             if (ClassUtil.isUnsaved(entity)) {
@@ -116,24 +300,24 @@ class EntityMakerImpl implements EntityMaker {
         }
     }
 
-    private static void addManySideEntityIfExists(Object entity, Settable element, BeanValueHolder holder) {
-        Class<?> genericType = TypeResolver.resolveRawArgument(element.getType(), Collection.class);
-        Optional<?> manySideExists = holder.tryGet(genericType);
+    private static void addManySideEntityIfExists(Object entity, EntityMakePlan.WireStep wireStep, BeanValueHolder holder) {
+        Optional<?> manySideExists = holder.tryGet(wireStep.getValueType());
         if (manySideExists.isPresent()) {
             Object existValue = manySideExists.get();
-            Collection collection = element.valueIn(entity);
+            Collection collection = wireStep.getElement().valueIn(entity);
             if (collection != null) {
-                collection.add(existValue);
+                // the one side may be shared with other threads
+                synchronized (entity) {
+                    collection.add(existValue);
+                }
             }
         }
     }
 
-    private static void putManySideEntityIfExists(Object entity, Settable element, BeanValueHolder holder) {
-        Class<?>[] genericTypes = TypeResolver.resolveRawArguments(element.getType(), Collection.class);
-        Class<?> keyType = genericTypes[0];
-        Class<?> valueType = genericTypes[1];
-        Optional keyOptional = holder.tryGet(keyType);
-        Optional valueOptional = holder.tryGet(valueType);
+    private void putManySideEntityIfExists(Object entity, EntityMakePlan.WireStep wireStep, BeanValueHolder holder) {
+        Settable element = wireStep.getElement();
+        Optional keyOptional = holder.tryGet(wireStep.getKeyType());
+        Optional valueOptional = holder.tryGet(wireStep.getValueType());
         if (!keyOptional.isPresent()) {
             if(warnings) {
                 log.warn("You have to manually resolve this: {} {}", element.getType(), element);
@@ -147,7 +331,9 @@ class EntityMakerImpl implements EntityMaker {
             Object value = valueOptional.get();
             Map map = element.valueIn(entity);
             if (map != null) {
-                map.put(key, value);
+                synchronized (entity) {
+                    map.put(key, value);
+                }
             }
         }
     }
@@ -6,19 +6,31 @@ import com.github.huangp.entityunit.util.Settable;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicates;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Primitives;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
 
 import javax.persistence.EntityManager;
+import javax.persistence.Id;
 import javax.persistence.OneToOne;
+import javax.persistence.Query;
 import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
 import static com.github.huangp.entityunit.util.ClassUtil.findEntity;
+import static com.github.huangp.entityunit.util.HasAnnotationPredicate.has;
 
 /**
  * <b>NOTE:</b> Altering primary key is not supported in JPA specification.
@@ -27,9 +39,11 @@ import static com.github.huangp.entityunit.util.ClassUtil.findEntity;
  * i.e. some web app and framework keeps the entity id in session and if you delete and make a new object with different
  * id in your Selenium test it will fail.
  * <p>
- * The trick is to after hibernate persisted the entity and have a generated id, we alter it by using query.
- * The persistence context is polluted and can't be trusted. Therefore the entity will be detached first and re-loaded
- * again.
+ * The entity is persisted through the entity manager as usual so entity listeners, callback methods, validation and
+ * interceptors all apply. After that the generated id is altered by query. The persistence context is polluted and
+ * can't be trusted. Therefore the entity will be detached first and re-loaded again.
+ * <p>
+ * To fix ids of many persisted entities at once, use {@link #fixIds(EntityManager, Map)}.
  * <p>
  * There is no guarantee referential constraints are defined with "on update cascade", therefore <b>this callback only
  * supports entity with no association.</b>
@@ -46,46 +60,165 @@ public class FixIdCallback extends AbstractNoOpCallback {
     private final Class<?> entityType;
     private final Serializable wantedIdValue;
 
+    // fail before anything is persisted
     @Override
-    public Iterable<Object> afterPersist(EntityManager entityManager, Iterable<Object> persisted) {
+    public Iterable<Object> beforePersist(EntityManager entityManager, Iterable<Object> toBePersisted) {
+        checkPrecondition(findEntity(toBePersisted, entityType));
+        return toBePersisted;
+    }
 
+    @Override
+    public Iterable<Object> afterPersist(EntityManager entityManager, Iterable<Object> persisted) {
         Object entity = findEntity(persisted, entityType);
-
         Settable identityField = ClassUtil.getIdentityField(entity);
         Serializable generatedIdValue = identityField.valueIn(entity);
-        if (generatedIdValue.equals(wantedIdValue))
-        {
-           return persisted;
+        if (generatedIdValue.equals(toIdType(wantedIdValue, identityField))) {
+            return persisted;
         }
-        checkPrecondition(entity);
-
-        String entityName = ClassUtil.getEntityName(entityType);
-        String idColumnName = identityField.getSimpleName();
-        String queryString = String.format("update %s set %s=%s where %s=%s", entityName, idColumnName, wantedIdValue, idColumnName, generatedIdValue);
-        log.info("query to update generated id: {}", queryString);
-
-        int affectedRow = entityManager.createQuery(queryString).executeUpdate();
-        log.debug("update generated id affected row: {}", affectedRow);
-
-        // set the updated value back to entity
-        entityManager.detach(entity); // remove it from current persistence context
-        // regain the entity back
-        Object updated = entityManager.find(entityType, wantedIdValue);
+        Object updated = fixIds(entityManager, Collections.singletonMap(entity, wantedIdValue)).get(0);
         List<Object> toReturn = Lists.newArrayList(persisted);
         int index = Iterables.indexOf(persisted, Predicates.instanceOf(entityType));
         toReturn.set(index, updated);
         return toReturn;
     }
 
+    /**
+     * Alter ids of many persisted entities.
+     * <p>
+     * All entities are checked for associations first so nothing is changed if any of them fails. Then for each entity
+     * type there is one bulk update (per 500 entities) and one query to load them again. Given entities are detached.
+     *
+     * @param entityManager
+     *         entity manager with an active transaction
+     * @param wantedIds
+     *         persisted entity to its wanted id
+     * @return reloaded entities in the order of given map
+     */
+    public static List<Object> fixIds(EntityManager entityManager, Map<?, ? extends Serializable> wantedIds) {
+        // entity type -> generated id -> wanted id
+        Map<Class<?>, Map<Serializable, Serializable>> idChanges = Maps.newLinkedHashMap();
+        for (Map.Entry<?, ? extends Serializable> entry : wantedIds.entrySet()) {
+            Object entity = entry.getKey();
+            Map<Serializable, Serializable> changes = idChanges.get(entity.getClass());
+            if (changes == null) {
+                changes = Maps.newLinkedHashMap();
+                idChanges.put(entity.getClass(), changes);
+            }
+            Settable identityField = ClassUtil.getIdentityField(entity);
+            changes.put(identityField.<Serializable>valueIn(entity), toIdType(entry.getValue(), identityField));
+        }
+        for (Class<?> type : idChanges.keySet()) {
+            Iterable<Settable> associations = getAssociations(type);
+            for (Object entity : wantedIds.keySet()) {
+                if (entity.getClass() == type) {
+                    checkPrecondition(associations, entity);
+                }
+            }
+        }
+
+        entityManager.flush();
+        for (Map.Entry<Class<?>, Map<Serializable, Serializable>> entry : idChanges.entrySet()) {
+            updateIds(entityManager, entry.getKey(), entry.getValue());
+        }
+        // the persistence context is polluted. Remove them and load them again.
+        for (Object entity : wantedIds.keySet()) {
+            entityManager.detach(entity);
+        }
+        Map<Class<?>, Map<Serializable, Object>> reloaded = Maps.newHashMap();
+        for (Map.Entry<Class<?>, Map<Serializable, Serializable>> entry : idChanges.entrySet()) {
+            reloaded.put(entry.getKey(), reload(entityManager, entry.getKey(), entry.getValue().values()));
+        }
+        List<Object> result = Lists.newArrayListWithCapacity(wantedIds.size());
+        for (Map.Entry<?, ? extends Serializable> entry : wantedIds.entrySet()) {
+            Object entity = entry.getKey();
+            Serializable wantedId = toIdType(entry.getValue(), ClassUtil.getIdentityField(entity));
+            result.add(reloaded.get(entity.getClass()).get(wantedId));
+        }
+        return result;
+    }
+
+    // wanted id may be given as another number type (i.e. Integer for Long id). Query parameter and reloaded entity
+    // lookup need the exact id type.
+    private static Serializable toIdType(Serializable id, Settable identityField) {
+        Class<?> idType = Primitives.wrap(ClassUtil.getRawType(identityField.getType()));
+        if (idType.isInstance(id) || !(id instanceof Number)) {
+            return id;
+        }
+        Number number = (Number) id;
+        if (idType == Long.class) {
+            return number.longValue();
+        }
+        if (idType == Integer.class) {
+            return number.intValue();
+        }
+        if (idType == Short.class) {
+            return number.shortValue();
+        }
+        if (idType == BigInteger.class) {
+            return new BigDecimal(number.toString()).toBigIntegerExact();
+        }
+        if (idType == BigDecimal.class) {
+            return new BigDecimal(number.toString());
+        }
+        return id;
+    }
+
+    // HQL doesn't take parameters in case results. Table, id column and its type come from hibernate mapping.
+    private static void updateIds(EntityManager entityManager, Class<?> entityType,
+            Map<Serializable, Serializable> changes) {
+        SessionFactoryImplementor factory = (SessionFactoryImplementor) entityManager.unwrap(Session.class)
+                .getSessionFactory();
+        AbstractEntityPersister persister = (AbstractEntityPersister) factory.getClassMetadata(entityType);
+        String idColumn = persister.getIdentifierColumnNames()[0];
+        // database can't tell the type of a parameter in case result
+        String idColumnType = factory.getDialect().getTypeName(persister.getIdentifierType().sqlTypes(factory)[0]);
+        List<Serializable> generatedIds = ImmutableList.copyOf(changes.keySet());
+        for (List<Serializable> chunk : Lists.partition(generatedIds, EntityCleaner.MAX_IN_LIST_SIZE)) {
+            StringBuilder sql = new StringBuilder("update ").append(persister.getTableName()).append(" set ")
+                    .append(idColumn).append(" = case");
+            for (int i = 0; i < chunk.size(); i++) {
+                sql.append(" when ").append(idColumn).append(" = :generated").append(i).append(" then cast(:wanted")
+                        .append(i).append(" as ").append(idColumnType).append(")");
+            }
+            sql.append(" end where ").append(idColumn).append(" in (:generatedIds)");
+            Query query = entityManager.createNativeQuery(sql.toString()).setParameter("generatedIds", chunk);
+            for (int i = 0; i < chunk.size(); i++) {
+                query.setParameter("generated" + i, chunk.get(i)).setParameter("wanted" + i, changes.get(chunk.get(i)));
+            }
+            int affectedRow = query.executeUpdate();
+            log.info("updated {} generated id of {}", affectedRow, entityType.getSimpleName());
+        }
+    }
+
+    private static Map<Serializable, Object> reload(EntityManager entityManager, Class<?> entityType,
+            Collection<Serializable> ids) {
+        Settable idSettable = Iterables.find(EntityClass.from(entityType).getElements(), has(Id.class));
+        String queryString = String.format("from %s e where e.%s in (:ids)", ClassUtil.getEntityName(entityType),
+                idSettable.getSimpleName());
+        Map<Serializable, Object> reloaded = Maps.newHashMap();
+        for (List<Serializable> chunk : Lists.partition(ImmutableList.copyOf(ids), EntityCleaner.MAX_IN_LIST_SIZE)) {
+            for (Object entity : entityManager.createQuery(queryString).setParameter("ids", chunk).getResultList()) {
+                reloaded.put(idSettable.<Serializable>valueIn(entity), entity);
+            }
+        }
+        return reloaded;
+    }
+
     private void checkPrecondition(Object entity) {
-        try {
-            EntityClass entityClass = EntityClass.from(entityType, ScanOption.IncludeOneToOne);
+        checkPrecondition(getAssociations(entityType), entity);
+    }
 
-            Iterable<Settable> oneToManyGetters = entityClass.getContainingEntitiesElements();
-            Iterable<Settable> manyToManyGetters = entityClass.getManyToMany();
-            Iterable<Settable> oneToOneGetters = getOneToOneGetters(entityClass);
-            Iterable<Settable> associations = Iterables.concat(oneToManyGetters, manyToManyGetters, oneToOneGetters);
+    private static Iterable<Settable> getAssociations(Class<?> entityType) {
+        EntityClass entityClass = EntityClass.from(entityType, ScanOption.IncludeOneToOne);
 
+        Iterable<Settable> oneToManyGetters = entityClass.getContainingEntitiesElements();
+        Iterable<Settable> manyToManyGetters = entityClass.getManyToMany();
+        Iterable<Settable> oneToOneGetters = getOneToOneGetters(entityClass);
+        return ImmutableList.copyOf(Iterables.concat(oneToManyGetters, manyToManyGetters, oneToOneGetters));
+    }
+
+    private static void checkPrecondition(Iterable<Settable> associations, Object entity) {
+        try {
             for (Settable settable : associations) {
                 Object result = settable.valueIn(entity);
                 if (result == null) {
@@ -93,14 +226,13 @@ public class FixIdCallback extends AbstractNoOpCallback {
                 }
                 log.debug("referenced entity association [{}] result: {}", settable.getSimpleName(), result);
                 if (ClassUtil.isCollection(result.getClass())) {
-                    Preconditions.checkState((result == null) || ((Collection) result).isEmpty(),
+                    Preconditions.checkState(((Collection) result).isEmpty(),
                             NOT_EMPTY_ASSOCIATION_ERROR, settable.fullyQualifiedName());
                 } else if (ClassUtil.isMap(result.getClass())) {
-                    Preconditions.checkState((result == null) || ((Map) result).isEmpty(),
+                    Preconditions.checkState(((Map) result).isEmpty(),
                             NOT_EMPTY_ASSOCIATION_ERROR, settable.fullyQualifiedName());
                 } else {
-                    Preconditions.checkState(result == null, NOT_EMPTY_ASSOCIATION_ERROR,
-                            settable.fullyQualifiedName());
+                    Preconditions.checkState(false, NOT_EMPTY_ASSOCIATION_ERROR, settable.fullyQualifiedName());
                 }
             }
         } catch (Exception e) {
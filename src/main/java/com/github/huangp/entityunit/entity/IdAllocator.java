@@ -0,0 +1,217 @@
+package com.github.huangp.entityunit.entity;
+
+import com.github.huangp.entityunit.util.Accessors;
+import com.github.huangp.entityunit.util.ClassUtil;
+import com.github.huangp.entityunit.util.Settable;
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Primitives;
+import lombok.extern.slf4j.Slf4j;
+
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.PostInsertIdentifierGenerator;
+
+import javax.persistence.EntityManager;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.github.huangp.entityunit.util.HasAnnotationPredicate.has;
+
+/**
+ * Hands out entity ids on the client side so that they can be assigned before insert.
+ * <p>
+ * For IDENTITY generated or assigned ids, ids are handed out in blocks per entity type. A new block starts after the
+ * current max id in the table (or after the last handed out id if that is bigger), so only one max query is issued per
+ * block. Therefore it assumes nothing else is inserting into the same tables with generated ids while it's in use.
+ * Only numeric (Long or Integer) ids are supported.
+ * <p>
+ * SEQUENCE and TABLE generated ids are taken from the Hibernate identifier generator of the entity instead, so they
+ * never collide with ids Hibernate generates. This needs an allocator created with an EntityManager. AUTO is resolved
+ * through the generator Hibernate picked when there is an EntityManager. Without one AUTO is only handed out in blocks
+ * on databases where Hibernate's native generator uses identity columns (H2, HSQLDB and MySQL). Elsewhere it needs an
+ * EntityManager too.
+ * <p>
+ * With ids assigned up front rows can be inserted in JDBC batches even for IDENTITY generated ids (Hibernate inserts
+ * those one by one). One allocator can be shared by several JdbcEntityWriter so that they don't hand out the same id.
+ * <p>
+ * It's safe to share between threads.
+ *
+ * @author Patrick Huang
+ * @see JdbcEntityWriter
+ */
+@Slf4j
+public class IdAllocator {
+    public static final int DEFAULT_BLOCK_SIZE = 100;
+
+    private final int blockSize;
+    private final Optional<EntityManager> entityManager;
+    private final ConcurrentMap<Class<?>, Block> blocks = Maps.newConcurrentMap();
+    private final ConcurrentMap<Class<?>, Optional<IdentifierGenerator>> generators = Maps.newConcurrentMap();
+
+    public IdAllocator() {
+        this(DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * @param blockSize
+     *         number of ids handed out for a type before querying the table again
+     */
+    public IdAllocator(int blockSize) {
+        this(Optional.<EntityManager>absent(), blockSize);
+    }
+
+    /**
+     * @param entityManager
+     *         entity manager whose session runs the Hibernate identifier generators
+     */
+    public IdAllocator(EntityManager entityManager) {
+        this(entityManager, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * @param entityManager
+     *         entity manager whose session runs the Hibernate identifier generators
+     * @param blockSize
+     *         number of ids handed out for a type before querying the table again
+     */
+    public IdAllocator(EntityManager entityManager, int blockSize) {
+        this(Optional.of(entityManager), blockSize);
+    }
+
+    private IdAllocator(Optional<EntityManager> entityManager, int blockSize) {
+        Preconditions.checkArgument(blockSize > 0, "block size must be positive: %s", blockSize);
+        this.entityManager = entityManager;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * @param connection
+     *         JDBC connection to query current max id when a new block is needed
+     * @param entityType
+     *         entity type
+     * @return next id for the entity type
+     * @throws UnsupportedOperationException
+     *         if the id is generated by SEQUENCE or TABLE and this allocator has no EntityManager
+     */
+    public Serializable allocate(final Connection connection, Class<?> entityType) {
+        Optional<IdentifierGenerator> generator = generators.get(entityType);
+        if (generator == null) {
+            generator = generatorOf(connection, entityType);
+            generators.putIfAbsent(entityType, generator);
+        }
+        if (generator.isPresent()) {
+            SessionImplementor session = entityManager.get().unwrap(SessionImplementor.class);
+            return generator.get().generate(session, null);
+        }
+        return allocate(entityType, new MaxIdLookup() {
+            @Override
+            public long maxId(Class<?> type) {
+                TableMapping mapping = TableMapping.of(type);
+                String sql = String.format("select max(%s) from %s", mapping.getIdColumn().getName(),
+                        mapping.getTableName());
+                try {
+                    Statement statement = connection.createStatement();
+                    try {
+                        ResultSet resultSet = statement.executeQuery(sql);
+                        resultSet.next();
+                        return resultSet.getLong(1);
+                    } finally {
+                        statement.close();
+                    }
+                } catch (SQLException e) {
+                    throw Throwables.propagate(e);
+                }
+            }
+        });
+    }
+
+    private Serializable allocate(Class<?> entityType, MaxIdLookup lookup) {
+        Class<?> idType = Primitives.wrap(ClassUtil.getRawType(idSettable(entityType).getType()));
+        Preconditions.checkState(idType == Long.class || idType == Integer.class,
+                "only Long or Integer id can be allocated: %s", entityType);
+        Block block = blocks.get(entityType);
+        if (block == null) {
+            Block created = new Block();
+            Block existing = blocks.putIfAbsent(entityType, created);
+            block = existing != null ? existing : created;
+        }
+        long id = block.next(entityType, lookup);
+        if (idType == Integer.class) {
+            return (int) id;
+        }
+        return id;
+    }
+
+    // the Hibernate generator to use, or absent if ids can be handed out in blocks
+    private Optional<IdentifierGenerator> generatorOf(Connection connection, Class<?> entityType) {
+        GeneratedValue generatedValue = idSettable(entityType).getAnnotation(GeneratedValue.class);
+        if (generatedValue == null || generatedValue.strategy() == GenerationType.IDENTITY) {
+            return Optional.absent();
+        }
+        if (!entityManager.isPresent()) {
+            if (generatedValue.strategy() == GenerationType.AUTO && nativeIdIsIdentity(connection)) {
+                return Optional.absent();
+            }
+            throw new UnsupportedOperationException(String.format(
+                    "%s id of %s comes from a generator. Create IdAllocator with an EntityManager",
+                    generatedValue.strategy(), entityType.getName()));
+        }
+        SessionImplementor session = entityManager.get().unwrap(SessionImplementor.class);
+        ClassMetadata metadata = session.getFactory().getClassMetadata(entityType);
+        Preconditions.checkArgument(metadata != null, "%s is not a managed entity", entityType);
+        IdentifierGenerator generator = session.getFactory().getIdentifierGenerator(metadata.getEntityName());
+        if (generator instanceof PostInsertIdentifierGenerator) {
+            return Optional.absent();
+        }
+        return Optional.of(generator);
+    }
+
+    private static boolean nativeIdIsIdentity(Connection connection) {
+        try {
+            Optional<Dialect> dialect = Dialect.find(connection);
+            return dialect.isPresent() && dialect.get().nativeIdIsIdentity();
+        } catch (SQLException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    static void assignId(Object entity, Serializable id) {
+        Accessors.bind(entity.getClass(), idSettable(entity.getClass()), true).set(entity, id);
+    }
+
+    private static Settable idSettable(Class<?> entityType) {
+        Optional<Settable> idSettable = Iterables.tryFind(EntityClass.from(entityType).getElements(), has(Id.class));
+        Preconditions.checkState(idSettable.isPresent(), "no @Id found in %s", entityType);
+        return idSettable.get();
+    }
+
+    interface MaxIdLookup {
+        long maxId(Class<?> entityType);
+    }
+
+    private class Block {
+        private long next;
+        private long end = -1;
+
+        private synchronized long next(Class<?> entityType, MaxIdLookup lookup) {
+            if (next > end) {
+                next = Math.max(next, lookup.maxId(entityType) + 1);
+                end = next + blockSize - 1;
+                log.debug("id block for {}: {} - {}", entityType.getSimpleName(), next, end);
+            }
+            return next++;
+        }
+    }
+}
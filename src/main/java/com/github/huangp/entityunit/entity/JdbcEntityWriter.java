@@ -0,0 +1,222 @@
+package com.github.huangp.entityunit.entity;
+
+import com.github.huangp.entityunit.util.ClassUtil;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Primitives;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * Writes entities straight into their tables with JDBC batch insert, bypassing the EntityManager.
+ * <p>
+ * Table and column names are worked out from JPA annotations (see TableMapping). Ids are assigned on the client side
+ * by an IdAllocator when not already set. Therefore it assumes nothing else is inserting into the same tables while
+ * it's in use. Entities with SEQUENCE or TABLE generated ids need an IdAllocator created with an EntityManager.
+ * <p>
+ * Rows are batched per table and sent every batch size rows. Tables are inserted in the order they are first
+ * written so entities must be written after the entities they reference (which is the order EntityMaker makes them).
+ * No JPA lifecycle callbacks, cascades or version checks happen. The connection is not committed nor closed.
+ * <p>
+ * Not thread safe.
+ * <pre>
+ * {@code
+ *
+ * JdbcEntityWriter writer = new JdbcEntityWriter(connection);
+ * List<Serializable> ids = maker.makeAndInsertMany(writer, LineItem.class, 100000);
+ * writer.close();
+ * connection.commit();
+ * }
+ * </pre>
+ *
+ * @author Patrick Huang
+ * @see EntityMaker#makeAndInsertMany(JdbcEntityWriter, Class, int)
+ */
+@Slf4j
+public class JdbcEntityWriter {
+    private final Connection connection;
+    private final int batchSize;
+    private final Map<Class<?>, TableMapping> mappings = Maps.newHashMap();
+    private final IdAllocator idAllocator;
+    // insertion order matters: referenced tables first then join tables
+    private final Map<String, BatchStatement> tableStatements = Maps.newLinkedHashMap();
+    private final Map<String, BatchStatement> joinTableStatements = Maps.newLinkedHashMap();
+    private int pendingRows;
+
+    public JdbcEntityWriter(Connection connection) {
+        this(connection, EntityMaker.DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param connection
+     *         connection to write to
+     * @param batchSize
+     *         send pending rows after this many entities are written
+     */
+    public JdbcEntityWriter(Connection connection, int batchSize) {
+        this(connection, batchSize, new IdAllocator());
+    }
+
+    /**
+     * @param connection
+     *         connection to write to
+     * @param batchSize
+     *         send pending rows after this many entities are written
+     * @param idAllocator
+     *         id allocator shared with other writers or EntityMaker
+     */
+    public JdbcEntityWriter(Connection connection, int batchSize, IdAllocator idAllocator) {
+        Preconditions.checkArgument(batchSize > 0, "batch size must be positive: %s", batchSize);
+        this.connection = connection;
+        this.batchSize = batchSize;
+        this.idAllocator = idAllocator;
+    }
+
+    /**
+     * Add the entity row (and its join table rows) to the batch. Id will be assigned to the entity if it's null.
+     *
+     * @param entity
+     *         entity to write
+     * @return id of the entity
+     */
+    public Serializable write(Object entity) {
+        TableMapping mapping = mappingOf(entity.getClass());
+        Object id = mapping.getIdColumn().getSettable().valueIn(entity);
+        if (id == null) {
+            id = idAllocator.allocate(connection, mapping.getEntityType());
+            mapping.getIdWriter().set(entity, id);
+        }
+        try {
+            BatchStatement statement = statementFor(tableStatements, mapping.getInsertSql());
+            int index = 1;
+            for (TableMapping.ColumnMapping column : mapping.getColumns()) {
+                Object value = column.jdbcValue(entity);
+                if (value == null && column.getKind() == TableMapping.ValueKind.VERSION) {
+                    value = initialVersion(column);
+                }
+                statement.bind(index++, value, column.getSqlType());
+            }
+            statement.addBatch();
+
+            Object ownerId = mapping.getIdColumn().toJdbcValue(id);
+            for (TableMapping.JoinTableMapping joinTable : mapping.getJoinTables()) {
+                for (Object value : joinTable.values(entity)) {
+                    BatchStatement joinStatement = statementFor(joinTableStatements, joinTable.getInsertSql());
+                    joinStatement.bind(1, ownerId, mapping.getIdColumn().getSqlType());
+                    joinStatement.bind(2, joinTable.jdbcValue(value), joinTable.getValueMapping().getSqlType());
+                    joinStatement.addBatch();
+                }
+            }
+        } catch (SQLException e) {
+            throw Throwables.propagate(e);
+        }
+        if (++pendingRows >= batchSize) {
+            flush();
+        }
+        return (Serializable) id;
+    }
+
+    /**
+     * Send all pending rows to database.
+     */
+    public void flush() {
+        try {
+            for (BatchStatement statement : tableStatements.values()) {
+                statement.executeBatch();
+            }
+            for (BatchStatement statement : joinTableStatements.values()) {
+                statement.executeBatch();
+            }
+        } catch (SQLException e) {
+            // batch update exception hides the real cause in next exception
+            throw Throwables.propagate(e.getNextException() != null ? e.getNextException() : e);
+        }
+        pendingRows = 0;
+    }
+
+    /**
+     * Flush pending rows and close prepared statements. The connection stays open.
+     */
+    public void close() {
+        try {
+            flush();
+        } finally {
+            closeAll(tableStatements);
+            closeAll(joinTableStatements);
+        }
+    }
+
+    private TableMapping mappingOf(Class<?> entityType) {
+        TableMapping mapping = mappings.get(entityType);
+        if (mapping == null) {
+            mapping = TableMapping.of(entityType);
+            log.debug("insert statement for {}: {}", entityType, mapping.getInsertSql());
+            mappings.put(entityType, mapping);
+        }
+        return mapping;
+    }
+
+    private static Object initialVersion(TableMapping.ColumnMapping column) {
+        Class<?> versionType = Primitives.wrap(ClassUtil.getRawType(column.getSettable().getType()));
+        if (versionType == Long.class) {
+            return 0L;
+        }
+        if (versionType == Short.class) {
+            return (short) 0;
+        }
+        return 0;
+    }
+
+    private BatchStatement statementFor(Map<String, BatchStatement> statements, String sql) throws SQLException {
+        BatchStatement statement = statements.get(sql);
+        if (statement == null) {
+            statement = new BatchStatement(connection.prepareStatement(sql));
+            statements.put(sql, statement);
+        }
+        return statement;
+    }
+
+    private static void closeAll(Map<String, BatchStatement> statements) {
+        for (BatchStatement statement : statements.values()) {
+            try {
+                statement.preparedStatement.close();
+            } catch (SQLException e) {
+                log.warn("can not close statement", e);
+            }
+        }
+        statements.clear();
+    }
+
+    @RequiredArgsConstructor
+    private static class BatchStatement {
+        private final PreparedStatement preparedStatement;
+        private int pending;
+
+        void bind(int index, Object value, int sqlType) throws SQLException {
+            if (value == null) {
+                preparedStatement.setNull(index, sqlType);
+            } else {
+                preparedStatement.setObject(index, value);
+            }
+        }
+
+        void addBatch() throws SQLException {
+            preparedStatement.addBatch();
+            pending++;
+        }
+
+        void executeBatch() throws SQLException {
+            if (pending > 0) {
+                preparedStatement.executeBatch();
+                pending = 0;
+            }
+        }
+    }
+}
@@ -1,12 +1,23 @@
 package com.github.huangp.entityunit.entity;
 
 import com.github.huangp.entityunit.holder.BeanValueHolder;
+import com.github.huangp.entityunit.maker.BeanMakePlan;
 import com.github.huangp.entityunit.maker.PreferredValueMakersRegistry;
+import com.github.huangp.entityunit.maker.RandomValueSource;
+import com.github.huangp.entityunit.maker.Sequences;
+import com.github.huangp.entityunit.maker.ValueSource;
+import com.google.common.collect.Maps;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 
+import java.util.concurrent.ConcurrentMap;
+
 /**
- * At the moment BeanValueHolder and PreferredValueMakersRegistry are the context.
+ * At the moment BeanValueHolder, PreferredValueMakersRegistry and ValueSource are the context.
+ * <p>
+ * It also caches compiled BeanMakePlan for each bean type since makers are resolved against this context, and owns the
+ * number Sequences of made fields.
  *
  * @author Patrick Huang
  */
@@ -15,5 +26,39 @@ import lombok.RequiredArgsConstructor;
 public class MakeContext {
     private final BeanValueHolder beanValueHolder;
     private final PreferredValueMakersRegistry preferredValueMakers;
+    private final ValueSource valueSource;
+    private final Sequences sequences;
+
+    @Getter(AccessLevel.NONE)
+    private final ConcurrentMap<Class<?>, BeanMakePlan<?>> beanMakePlans = Maps.newConcurrentMap();
+
+    public MakeContext(BeanValueHolder beanValueHolder, PreferredValueMakersRegistry preferredValueMakers) {
+        this(beanValueHolder, preferredValueMakers, RandomValueSource.DEFAULT);
+    }
+
+    public MakeContext(BeanValueHolder beanValueHolder, PreferredValueMakersRegistry preferredValueMakers,
+            ValueSource valueSource) {
+        this(beanValueHolder, preferredValueMakers, valueSource, new Sequences());
+    }
 
+    /**
+     * Get the compiled make plan for given type. It will be compiled on first call.
+     *
+     * @param type
+     *         bean type
+     * @param <T>
+     *         bean type
+     * @return make plan
+     */
+    public <T> BeanMakePlan<T> getBeanMakePlan(Class<T> type) {
+        BeanMakePlan<T> plan = (BeanMakePlan<T>) beanMakePlans.get(type);
+        if (plan == null) {
+            plan = BeanMakePlan.compile(type, this);
+            BeanMakePlan<T> existing = (BeanMakePlan<T>) beanMakePlans.putIfAbsent(type, plan);
+            if (existing != null) {
+                plan = existing;
+            }
+        }
+        return plan;
+    }
 }
@@ -0,0 +1,182 @@
+package com.github.huangp.entityunit.entity;
+
+import com.github.huangp.entityunit.util.ClassMetadata;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.MapMaker;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Static caches of EntityClass and the dependency graph per class and scan option, and of ClassMetadata per class.
+ * <p>
+ * Delete orders worked out by EntityCleaner are cached here as well. They are keyed by a set of classes so they are
+ * held under one class of the set (the one with the least name) and go away together with it.
+ * <p>
+ * Classes are held by weak keys and the cached values by soft references. Cached values reference their classes, so
+ * an entry keeps the class (and its class loader) reachable until the garbage collector clears the soft value under
+ * memory pressure. Only then can the class loader of an undeployed application be collected. Capacity defaults to
+ * DEFAULT_CAPACITY classes per scan option and can be changed for the whole JVM with {@link #configure(long)}.
+ * <p>
+ * EntityClass caches of Metamodel based providers (one per provider) are registered here as well, so that configure
+ * and the EntityClass stats cover them. They are only weakly referenced and go away with their provider.
+ *
+ * @author Patrick Huang
+ */
+@Slf4j
+public final class MetadataCache<V> {
+    public static final long DEFAULT_CAPACITY = 10000;
+
+    static final MetadataCache<EntityClass> ENTITY_CLASSES = new MetadataCache<EntityClass>();
+    static final MetadataCache<DependencyGraph> DEPENDENCY_GRAPHS = new MetadataCache<DependencyGraph>();
+    // class metadata doesn't depend on scan option. It's always under the default one.
+    static final MetadataCache<ClassMetadata<?>> CLASS_METADATA = new MetadataCache<ClassMetadata<?>>();
+    static final MetadataCache<ConcurrentMap<Set<Class<?>>, List<Class>>> DELETE_ORDERS =
+            new MetadataCache<ConcurrentMap<Set<Class<?>>, List<Class>>>();
+
+    // EntityClass caches of providers other than the default one
+    private static final Set<MetadataCache<EntityClass>> PROVIDER_CACHES =
+            Collections.newSetFromMap(new MapMaker().weakKeys().<MetadataCache<EntityClass>, Boolean>makeMap());
+    private static long capacity = DEFAULT_CAPACITY;
+
+    private volatile Map<ScanOption, Cache<Class<?>, V>> caches = newCaches(DEFAULT_CAPACITY);
+
+    MetadataCache() {
+    }
+
+    /**
+     * @return a new EntityClass cache for one EntityClassProvider, covered by configure and the EntityClass stats
+     */
+    static synchronized MetadataCache<EntityClass> newEntityClassCache() {
+        MetadataCache<EntityClass> cache = new MetadataCache<EntityClass>();
+        cache.caches = newCaches(capacity);
+        PROVIDER_CACHES.add(cache);
+        return cache;
+    }
+
+    private static <V> Map<ScanOption, Cache<Class<?>, V>> newCaches(long capacity) {
+        Map<ScanOption, Cache<Class<?>, V>> caches = Maps.newEnumMap(ScanOption.class);
+        for (ScanOption option : ScanOption.values()) {
+            Cache<Class<?>, V> cache = CacheBuilder.newBuilder()
+                    .weakKeys()
+                    .softValues()
+                    .maximumSize(capacity)
+                    .recordStats()
+                    .build();
+            caches.put(option, cache);
+        }
+        return caches;
+    }
+
+    V get(Class<?> type, ScanOption option, Callable<? extends V> loader) {
+        try {
+            return caches.get(option).get(type, loader);
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        } catch (UncheckedExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    private CacheStats stats() {
+        CacheStats stats = new CacheStats(0, 0, 0, 0, 0, 0);
+        for (Cache<Class<?>, V> cache : caches.values()) {
+            stats = stats.plus(cache.stats());
+        }
+        return stats;
+    }
+
+    private long size() {
+        long size = 0;
+        for (Cache<Class<?>, V> cache : caches.values()) {
+            size += cache.size();
+        }
+        return size;
+    }
+
+    /**
+     * Change capacity of all caches. The caches are shared by all EntityMakers in the JVM and everything cached so far
+     * is dropped.
+     *
+     * @param capacity
+     *         max number of classes cached per scan option
+     */
+    public static synchronized void configure(long capacity) {
+        Preconditions.checkArgument(capacity > 0, "capacity must be positive");
+        log.debug("metadata cache capacity: {}", capacity);
+        MetadataCache.capacity = capacity;
+        ENTITY_CLASSES.caches = MetadataCache.<EntityClass>newCaches(capacity);
+        for (MetadataCache<EntityClass> cache : providerCaches()) {
+            cache.caches = MetadataCache.<EntityClass>newCaches(capacity);
+        }
+        DEPENDENCY_GRAPHS.caches = MetadataCache.<DependencyGraph>newCaches(capacity);
+        CLASS_METADATA.caches = MetadataCache.<ClassMetadata<?>>newCaches(capacity);
+        DELETE_ORDERS.caches = MetadataCache.<ConcurrentMap<Set<Class<?>>, List<Class>>>newCaches(capacity);
+    }
+
+    /**
+     * Cached ClassMetadata of the class. Only meant for {@link ClassMetadata#of(Class)}.
+     *
+     * @param type
+     *         the class
+     * @param loader
+     *         creates the metadata on cache miss
+     * @return cached or created metadata
+     */
+    public static ClassMetadata<?> classMetadata(Class<?> type, Callable<? extends ClassMetadata<?>> loader) {
+        return CLASS_METADATA.get(type, ScanOption.IgnoreOptionalOneToOne, loader);
+    }
+
+    /**
+     * @return hit and miss stats of ClassMetadata cache
+     */
+    public static CacheStats classMetadataStats() {
+        return CLASS_METADATA.stats();
+    }
+
+    /**
+     * @return hit and miss stats of EntityClass caches, including those of Metamodel based providers
+     */
+    public static CacheStats entityClassStats() {
+        CacheStats stats = ENTITY_CLASSES.stats();
+        for (MetadataCache<EntityClass> cache : providerCaches()) {
+            stats = stats.plus(cache.stats());
+        }
+        return stats;
+    }
+
+    /**
+     * @return hit and miss stats of dependency scan result cache
+     */
+    public static CacheStats scanStats() {
+        return DEPENDENCY_GRAPHS.stats();
+    }
+
+    /**
+     * @return number of EntityClass currently cached, including those of Metamodel based providers
+     */
+    public static long entityClassCount() {
+        long count = ENTITY_CLASSES.size();
+        for (MetadataCache<EntityClass> cache : providerCaches()) {
+            count += cache.size();
+        }
+        return count;
+    }
+
+    private static synchronized List<MetadataCache<EntityClass>> providerCaches() {
+        return ImmutableList.copyOf(PROVIDER_CACHES);
+    }
+}
@@ -0,0 +1,92 @@
+package com.github.huangp.entityunit.entity;
+
+import com.github.huangp.entityunit.maker.BeanMakePlan;
+import com.github.huangp.entityunit.util.ClassMetadata;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Builds metadata for entity classes ahead of first use so that first make of each type is not slower than the rest.
+ * <p>
+ * For each type it scans the dependencies, creates EntityClass and ClassMetadata and compiles BeanMakePlan of the type,
+ * all its dependencies and the non entity beans they contain in the given MakeContext. Types are warmed up in
+ * parallel. Failure on one type is logged and the type will be handled as usual on first use.
+ *
+ * @author Patrick Huang
+ * @see EntityMakerBuilder#prewarm(Class[])
+ */
+@Slf4j
+@RequiredArgsConstructor
+class MetadataWarmer {
+    private final EntityClassScanner scanner;
+    private final MakeContext context;
+
+    void warm(Collection<Class<?>> types) {
+        if (types.isEmpty()) {
+            return;
+        }
+        int threads = Math.min(types.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<Class<?>>> tasks = Lists.newArrayList();
+            for (Class<?> type : types) {
+                tasks.add(new WarmTask(type));
+            }
+            for (Future<Class<?>> future : executor.invokeAll(tasks)) {
+                tryGet(future);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+        log.debug("warmed up {} types", types.size());
+    }
+
+    private static void tryGet(Future<Class<?>> future) throws InterruptedException {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            log.warn("fail to warm up metadata: {}", e.getCause().getMessage());
+            log.debug("exception", e.getCause());
+        }
+    }
+
+    @RequiredArgsConstructor
+    private class WarmTask implements Callable<Class<?>> {
+        private final Class<?> type;
+        private final Set<Class<?>> warmed = Sets.newHashSet();
+
+        @Override
+        public Class<?> call() throws Exception {
+            for (EntityClass dependency : scanner.scan(type)) {
+                warm(dependency.getType());
+            }
+            warm(type);
+            return type;
+        }
+
+        private void warm(Class<?> beanType) {
+            if (!warmed.add(beanType)) {
+                return;
+            }
+            ClassMetadata.of(beanType);
+            BeanMakePlan<?> plan = context.getBeanMakePlan(beanType);
+            // nested beans are made through their own plan
+            for (Class<?> nestedType : plan.getNestedBeanTypes()) {
+                warm(nestedType);
+            }
+        }
+    }
+}
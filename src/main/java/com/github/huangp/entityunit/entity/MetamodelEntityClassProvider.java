@@ -0,0 +1,142 @@
+package com.github.huangp.entityunit.entity;
+
+import com.github.huangp.entityunit.util.ClassMetadata;
+import com.github.huangp.entityunit.util.Settable;
+import com.github.huangp.entityunit.util.SettableField;
+import com.github.huangp.entityunit.util.SettableProperty;
+import com.google.common.base.Optional;
+import com.google.common.base.Predicate;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.persistence.ManyToMany;
+import javax.persistence.OneToOne;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.Metamodel;
+import javax.persistence.metamodel.SingularAttribute;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Builds EntityClass from JPA Metamodel for dependency scanning (EntityClassScanner and DependencyGraph). Everything
+ * else still uses EntityClass built from annotations (see EntityMakerBuilder#useMetamodel).
+ * <p>
+ * Elements are the persistent attributes the provider knows about and associations are told by
+ * Attribute.getPersistentAttributeType and SingularAttribute.isOptional. Therefore mappings in orm.xml and provider
+ * defaults are honored and there is no annotation scanning for them.
+ * <p>
+ * JPA Metamodel doesn't tell the owning side of an association. A OneToOne (when optional ones are included) or a
+ * ManyToMany attribute is treated as owning side unless it is annotated with mappedBy. Types that are not entities in
+ * the Metamodel fall back to reflection.
+ *
+ * @author Patrick Huang
+ * @see EntityMakerBuilder#useMetamodel(javax.persistence.EntityManagerFactory)
+ */
+@Slf4j
+@RequiredArgsConstructor
+class MetamodelEntityClassProvider implements EntityClassProvider {
+    private final Metamodel metamodel;
+    private final MetadataCache<EntityClass> cache = MetadataCache.newEntityClassCache();
+
+    @Override
+    public EntityClass get(final Class<?> entityType, final ScanOption scanOption) {
+        return cache.get(entityType, scanOption, new Callable<EntityClass>() {
+            @Override
+            public EntityClass call() throws Exception {
+                return create(entityType, scanOption);
+            }
+        });
+    }
+
+    private EntityClass create(Class<?> entityType, ScanOption scanOption) {
+        EntityType<?> managedType;
+        try {
+            managedType = metamodel.entity(entityType);
+        } catch (IllegalArgumentException e) {
+            log.debug("{} is not an entity in metamodel. Fall back to reflection", entityType);
+            return EntityClass.from(entityType, scanOption);
+        }
+        ImmutableMap.Builder<String, Attribute<?, ?>> attributes = ImmutableMap.builder();
+        List<Settable> elements = Lists.newArrayList();
+        for (Attribute<?, ?> attribute : managedType.getAttributes()) {
+            attributes.put(attribute.getName(), attribute);
+            elements.add(toSettable(entityType, attribute));
+        }
+        return new EntityClass(entityType, elements, scanOption, this, predicates(attributes.build(), scanOption));
+    }
+
+    private static Settable toSettable(Class<?> entityType, Attribute<?, ?> attribute) {
+        Member member = attribute.getJavaMember();
+        if (member instanceof Field) {
+            return SettableField.from(entityType, (Field) member);
+        }
+        ClassMetadata<?> metadata = ClassMetadata.of(entityType);
+        PropertyDescriptor descriptor = metadata.getProperties().get(attribute.getName());
+        if (descriptor != null && descriptor.getReadMethod() != null) {
+            return SettableProperty.from(entityType, descriptor);
+        }
+        Optional<Field> field = metadata.findField(attribute.getName());
+        if (field.isPresent()) {
+            return SettableField.from(entityType, field.get());
+        }
+        throw new IllegalStateException("can not find field or getter for " + attribute.getName() + " in " + entityType);
+    }
+
+    private static AssociationPredicates predicates(Map<String, Attribute<?, ?>> attributes, ScanOption scanOption) {
+        Predicate<Settable> oneToOne;
+        if (scanOption == ScanOption.IgnoreOptionalOneToOne) {
+            oneToOne = new AttributePredicate(attributes, Attribute.PersistentAttributeType.ONE_TO_ONE) {
+                @Override
+                boolean apply(Settable settable, Attribute<?, ?> attribute) {
+                    return !((SingularAttribute<?, ?>) attribute).isOptional();
+                }
+            };
+        } else {
+            oneToOne = new AttributePredicate(attributes, Attribute.PersistentAttributeType.ONE_TO_ONE) {
+                @Override
+                boolean apply(Settable settable, Attribute<?, ?> attribute) {
+                    OneToOne annotation = settable.getAnnotation(OneToOne.class);
+                    return annotation == null || Strings.isNullOrEmpty(annotation.mappedBy());
+                }
+            };
+        }
+        Predicate<Settable> manyToMany = new AttributePredicate(attributes,
+                Attribute.PersistentAttributeType.MANY_TO_MANY) {
+            @Override
+            boolean apply(Settable settable, Attribute<?, ?> attribute) {
+                ManyToMany annotation = settable.getAnnotation(ManyToMany.class);
+                return annotation == null || Strings.isNullOrEmpty(annotation.mappedBy());
+            }
+        };
+        return new AssociationPredicates(
+                new AttributePredicate(attributes, Attribute.PersistentAttributeType.MANY_TO_ONE),
+                oneToOne,
+                new AttributePredicate(attributes, Attribute.PersistentAttributeType.ONE_TO_MANY),
+                manyToMany);
+    }
+
+    @RequiredArgsConstructor
+    private static class AttributePredicate implements Predicate<Settable> {
+        private final Map<String, Attribute<?, ?>> attributes;
+        private final Attribute.PersistentAttributeType attributeType;
+
+        @Override
+        public boolean apply(Settable input) {
+            Attribute<?, ?> attribute = attributes.get(input.getSimpleName());
+            return attribute != null && attribute.getPersistentAttributeType() == attributeType
+                    && apply(input, attribute);
+        }
+
+        boolean apply(Settable settable, Attribute<?, ?> attribute) {
+            return true;
+        }
+    }
+}
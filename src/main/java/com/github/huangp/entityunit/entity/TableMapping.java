@@ -0,0 +1,436 @@
+package com.github.huangp.entityunit.entity;
+
+import com.github.huangp.entityunit.util.Accessor;
+import com.github.huangp.entityunit.util.Accessors;
+import com.github.huangp.entityunit.util.ClassUtil;
+import com.github.huangp.entityunit.util.Settable;
+import com.google.common.base.Joiner;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.primitives.Primitives;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import org.jodah.typetools.TypeResolver;
+
+import javax.persistence.CollectionTable;
+import javax.persistence.Column;
+import javax.persistence.ElementCollection;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import javax.persistence.Inheritance;
+import javax.persistence.JoinColumn;
+import javax.persistence.JoinTable;
+import javax.persistence.ManyToMany;
+import javax.persistence.ManyToOne;
+import javax.persistence.OneToMany;
+import javax.persistence.OneToOne;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+import javax.persistence.Version;
+import java.lang.annotation.Annotation;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+import static com.github.huangp.entityunit.util.HasAnnotationPredicate.has;
+
+/**
+ * Table and column mapping of an entity class worked out from EntityClass elements and JPA annotations.
+ * <p>
+ * Only what is needed to insert rows is supported: basic, enum and temporal columns, foreign key of ManyToOne and
+ * owning OneToOne, and ManyToMany or ElementCollection with explicitly named join table. Entity inheritance,
+ * embedded and hibernate custom type elements are rejected.
+ *
+ * @author Patrick Huang
+ * @see JdbcEntityWriter
+ */
+@Slf4j
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+@ToString(of = {"entityType", "tableName"})
+class TableMapping {
+    private static final String HIBERNATE_TYPE = "org.hibernate.annotations.Type";
+    private static final Set<Class<?>> JDBC_TYPES = ImmutableSet.<Class<?>>of(
+            String.class, Boolean.class, Character.class, Byte.class, Short.class, Integer.class, Long.class,
+            Float.class, Double.class, BigDecimal.class, BigInteger.class, byte[].class, char[].class);
+
+    private final Class<?> entityType;
+    private final String tableName;
+    private final ColumnMapping idColumn;
+    private final Accessor idWriter;
+    private final List<ColumnMapping> columns;
+    private final List<JoinTableMapping> joinTables;
+    private final String insertSql;
+
+    static TableMapping of(Class<?> entityType) {
+        ensureSupported(entityType);
+        EntityClass entityClass = EntityClass.from(entityType);
+        Settable idSettable = Iterables.find(entityClass.getElements(), has(Id.class));
+        ColumnMapping idColumn = basicColumn(idSettable);
+
+        List<ColumnMapping> insertable = Lists.newArrayList(idColumn);
+        List<ColumnMapping> notInsertable = Lists.newArrayList();
+        List<JoinTableMapping> joinTables = Lists.newArrayList();
+        for (Settable element : entityClass.getElements()) {
+            if (element == idSettable) {
+                continue;
+            }
+            if (ClassUtil.isCollection(element.getType()) || ClassUtil.isMap(element.getType())) {
+                JoinTableMapping joinTable = collectionTable(element);
+                if (joinTable != null) {
+                    joinTables.add(joinTable);
+                }
+                continue;
+            }
+            if (element.isAnnotationPresent(ManyToOne.class) || element.isAnnotationPresent(OneToOne.class)) {
+                if (isInverseOneToOne(element)) {
+                    continue;
+                }
+                if (element.isAnnotationPresent(JoinTable.class)) {
+                    joinTables.add(JoinTableMapping.association(element, false));
+                    continue;
+                }
+                ColumnMapping column = foreignKeyColumn(element);
+                (isInsertable(element) ? insertable : notInsertable).add(column);
+                continue;
+            }
+            (isInsertable(element) ? insertable : notInsertable).add(basicColumn(element));
+        }
+
+        // a column can be mapped twice (one of them not insertable). We still write it once and the insertable one wins.
+        // A not insertable column is otherwise written by the other side of a OneToMany, which we don't have here.
+        Set<String> names = Sets.newHashSet();
+        ImmutableList.Builder<ColumnMapping> columns = ImmutableList.builder();
+        for (ColumnMapping column : Iterables.concat(insertable, notInsertable)) {
+            if (names.add(column.getName().toUpperCase())) {
+                columns.add(column);
+            } else {
+                log.debug("column {} is mapped more than once in {}. Skipping {}", column.getName(), entityType,
+                        column.getSettable());
+            }
+        }
+        List<ColumnMapping> columnMappings = columns.build();
+        List<String> columnNames = Lists.newArrayListWithCapacity(columnMappings.size());
+        for (ColumnMapping column : columnMappings) {
+            columnNames.add(column.getName());
+        }
+        String tableName = tableName(entityType);
+        Accessor idWriter = Accessors.bind(entityType, idSettable, true);
+        return new TableMapping(entityType, tableName, idColumn, idWriter, columnMappings,
+                ImmutableList.copyOf(joinTables), insertSql(tableName, columnNames));
+    }
+
+    private static String insertSql(String table, List<String> columnNames) {
+        String placeholders = Joiner.on(", ").join(Collections.nCopies(columnNames.size(), "?"));
+        return String.format("insert into %s (%s) values (%s)", table, Joiner.on(", ").join(columnNames),
+                placeholders);
+    }
+
+    private static void ensureSupported(Class<?> entityType) {
+        Class<?> superClass = entityType.getSuperclass();
+        boolean hasEntitySuperClass = false;
+        while (superClass != null && superClass != Object.class) {
+            hasEntitySuperClass |= superClass.isAnnotationPresent(Entity.class);
+            superClass = superClass.getSuperclass();
+        }
+        if (entityType.isAnnotationPresent(Inheritance.class) || hasEntitySuperClass) {
+            throw new UnsupportedOperationException("entity inheritance is not supported: " + entityType);
+        }
+    }
+
+    static String tableName(Class<?> entityType) {
+        Table table = entityType.getAnnotation(Table.class);
+        if (table != null && !Strings.isNullOrEmpty(table.name())) {
+            return table.name();
+        }
+        return ClassUtil.getEntityName(entityType);
+    }
+
+    private static boolean isInsertable(Settable element) {
+        Column column = element.getAnnotation(Column.class);
+        JoinColumn joinColumn = element.getAnnotation(JoinColumn.class);
+        return (column == null || column.insertable()) && (joinColumn == null || joinColumn.insertable());
+    }
+
+    private static boolean isInverseOneToOne(Settable element) {
+        OneToOne oneToOne = element.getAnnotation(OneToOne.class);
+        return oneToOne != null && !Strings.isNullOrEmpty(oneToOne.mappedBy());
+    }
+
+    private static ColumnMapping basicColumn(Settable element) {
+        Column column = element.getAnnotation(Column.class);
+        String name = column != null && !Strings.isNullOrEmpty(column.name()) ? column.name() : element.getSimpleName();
+        return new ColumnMapping(name, element, valueKind(element, ClassUtil.getRawType(element.getType())), null);
+    }
+
+    private static ColumnMapping foreignKeyColumn(Settable element) {
+        Class<?> referencedType = ClassUtil.getRawType(element.getType());
+        ColumnMapping referencedId = referencedIdColumn(referencedType);
+        JoinColumn joinColumn = element.getAnnotation(JoinColumn.class);
+        String name = joinColumn != null && !Strings.isNullOrEmpty(joinColumn.name()) ? joinColumn.name()
+                : element.getSimpleName() + "_" + referencedId.getName();
+        return new ColumnMapping(name, element, ValueKind.FOREIGN_KEY, referencedId);
+    }
+
+    private static ColumnMapping referencedIdColumn(Class<?> referencedType) {
+        Settable referencedId = Iterables.find(EntityClass.from(referencedType).getElements(), has(Id.class));
+        return basicColumn(referencedId);
+    }
+
+    private static JoinTableMapping collectionTable(Settable element) {
+        if (element.isAnnotationPresent(OneToMany.class)) {
+            // foreign key is on the many side
+            return null;
+        }
+        ManyToMany manyToMany = element.getAnnotation(ManyToMany.class);
+        if (manyToMany != null) {
+            return Strings.isNullOrEmpty(manyToMany.mappedBy()) ? JoinTableMapping.association(element, true) : null;
+        }
+        if (element.isAnnotationPresent(ElementCollection.class)) {
+            return JoinTableMapping.elementCollection(element);
+        }
+        return null;
+    }
+
+    private static ValueKind valueKind(Settable element, Class<?> rawType) {
+        for (Annotation annotation : element.getAnnotations()) {
+            if (annotation.annotationType().getName().equals(HIBERNATE_TYPE)) {
+                throw new UnsupportedOperationException("custom hibernate type is not supported: " + element);
+            }
+        }
+        if (element.isAnnotationPresent(Version.class)) {
+            return ValueKind.VERSION;
+        }
+        if (rawType.isEnum()) {
+            Enumerated enumerated = element.getAnnotation(Enumerated.class);
+            return enumerated != null && enumerated.value() == EnumType.STRING ? ValueKind.ENUM_STRING
+                    : ValueKind.ENUM_ORDINAL;
+        }
+        if (Date.class.isAssignableFrom(rawType) || Calendar.class.isAssignableFrom(rawType)) {
+            Temporal temporal = element.getAnnotation(Temporal.class);
+            TemporalType temporalType = temporal == null ? TemporalType.TIMESTAMP : temporal.value();
+            switch (temporalType) {
+                case DATE:
+                    return ValueKind.DATE;
+                case TIME:
+                    return ValueKind.TIME;
+                default:
+                    return ValueKind.TIMESTAMP;
+            }
+        }
+        if (JDBC_TYPES.contains(Primitives.wrap(rawType))) {
+            return rawType == Character.class || rawType == char.class ? ValueKind.CHARACTER : ValueKind.BASIC;
+        }
+        throw new UnsupportedOperationException("can not map " + element + " to a column");
+    }
+
+    static enum ValueKind {
+        BASIC, CHARACTER, ENUM_ORDINAL, ENUM_STRING, DATE, TIME, TIMESTAMP, VERSION, FOREIGN_KEY
+    }
+
+    /**
+     * A column and where its value comes from.
+     */
+    @Getter
+    @ToString(of = {"name", "settable"})
+    static class ColumnMapping {
+        private final String name;
+        private final Settable settable;
+        private final ValueKind kind;
+        private final ColumnMapping referencedId;
+        private final int sqlType;
+
+        private ColumnMapping(String name, Settable settable, ValueKind kind, ColumnMapping referencedId) {
+            this.name = name;
+            this.settable = settable;
+            this.kind = kind;
+            this.referencedId = referencedId;
+            sqlType = sqlTypeOf(kind, settable, referencedId);
+        }
+
+        /**
+         * @param ownerInstance
+         *         entity
+         * @return the value to bind to the insert statement
+         */
+        Object jdbcValue(Object ownerInstance) {
+            return toJdbcValue(settable.valueIn(ownerInstance));
+        }
+
+        Object toJdbcValue(Object value) {
+            if (value == null) {
+                return null;
+            }
+            switch (kind) {
+                case CHARACTER:
+                    return String.valueOf(value);
+                case ENUM_ORDINAL:
+                    return ((Enum) value).ordinal();
+                case ENUM_STRING:
+                    return ((Enum) value).name();
+                case DATE:
+                    return new java.sql.Date(timeOf(value));
+                case TIME:
+                    return new Time(timeOf(value));
+                case TIMESTAMP:
+                    return new Timestamp(timeOf(value));
+                case FOREIGN_KEY:
+                    return referencedId.jdbcValue(value);
+                default:
+                    return value;
+            }
+        }
+
+        private static int sqlTypeOf(ValueKind kind, Settable settable, ColumnMapping referencedId) {
+            if (kind == ValueKind.FOREIGN_KEY) {
+                return referencedId.getSqlType();
+            }
+            Class<?> type = Primitives.wrap(ClassUtil.getRawType(settable.getType()));
+            switch (kind) {
+                case ENUM_ORDINAL:
+                    return Types.INTEGER;
+                case CHARACTER:
+                case ENUM_STRING:
+                    return Types.VARCHAR;
+                case DATE:
+                    return Types.DATE;
+                case TIME:
+                    return Types.TIME;
+                case TIMESTAMP:
+                    return Types.TIMESTAMP;
+                default:
+                    return basicSqlType(type);
+            }
+        }
+
+        private static long timeOf(Object value) {
+            return value instanceof Calendar ? ((Calendar) value).getTimeInMillis() : ((Date) value).getTime();
+        }
+
+        private static int basicSqlType(Class<?> type) {
+            if (type == String.class) {
+                return Types.VARCHAR;
+            }
+            if (type == Boolean.class) {
+                return Types.BOOLEAN;
+            }
+            if (type == Long.class || type == BigInteger.class) {
+                return Types.BIGINT;
+            }
+            if (type == Integer.class || type == Short.class || type == Byte.class) {
+                return Types.INTEGER;
+            }
+            if (type == Float.class || type == Double.class) {
+                return Types.DOUBLE;
+            }
+            if (type == BigDecimal.class) {
+                return Types.DECIMAL;
+            }
+            if (type == byte[].class) {
+                return Types.VARBINARY;
+            }
+            return Types.VARCHAR;
+        }
+    }
+
+    /**
+     * Rows of a join table (ManyToMany, association with JoinTable or ElementCollection).
+     * Join table and its columns must be named explicitly.
+     */
+    @Getter
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    @ToString(of = {"tableName", "settable"})
+    static class JoinTableMapping {
+        private final String tableName;
+        private final String ownerColumn;
+        private final String valueColumn;
+        private final Settable settable;
+        private final boolean collection;
+        private final boolean association;
+        private final ColumnMapping valueMapping;
+        private final String insertSql;
+
+        private static JoinTableMapping association(Settable element, boolean collection) {
+            JoinTable joinTable = element.getAnnotation(JoinTable.class);
+            if (joinTable == null || Strings.isNullOrEmpty(joinTable.name())
+                    || joinTable.joinColumns().length != 1 || joinTable.inverseJoinColumns().length != 1
+                    || Strings.isNullOrEmpty(joinTable.joinColumns()[0].name())
+                    || Strings.isNullOrEmpty(joinTable.inverseJoinColumns()[0].name())) {
+                throw new UnsupportedOperationException("join table and columns must be named explicitly: " + element);
+            }
+            Class<?> referencedType = collection
+                    ? TypeResolver.resolveRawArgument(element.getType(), Collection.class)
+                    : ClassUtil.getRawType(element.getType());
+            ColumnMapping valueMapping = referencedIdColumn(referencedType);
+            return new JoinTableMapping(joinTable.name(), joinTable.joinColumns()[0].name(),
+                    joinTable.inverseJoinColumns()[0].name(), element, collection, true, valueMapping,
+                    insertSql(joinTable.name(), ImmutableList.of(joinTable.joinColumns()[0].name(),
+                            joinTable.inverseJoinColumns()[0].name())));
+        }
+
+        private static JoinTableMapping elementCollection(Settable element) {
+            String tableName = null;
+            JoinColumn[] joinColumns = new JoinColumn[0];
+            CollectionTable collectionTable = element.getAnnotation(CollectionTable.class);
+            JoinTable joinTable = element.getAnnotation(JoinTable.class);
+            if (collectionTable != null) {
+                tableName = collectionTable.name();
+                joinColumns = collectionTable.joinColumns();
+            } else if (joinTable != null) {
+                tableName = joinTable.name();
+                joinColumns = joinTable.joinColumns();
+            }
+            Column column = element.getAnnotation(Column.class);
+            if (ClassUtil.isMap(element.getType()) || Strings.isNullOrEmpty(tableName) || joinColumns.length != 1
+                    || Strings.isNullOrEmpty(joinColumns[0].name()) || column == null
+                    || Strings.isNullOrEmpty(column.name())) {
+                throw new UnsupportedOperationException(
+                        "element collection table and columns must be named explicitly: " + element);
+            }
+            Class<?> valueType = TypeResolver.resolveRawArgument(element.getType(), Collection.class);
+            ColumnMapping valueMapping = new ColumnMapping(column.name(), element, valueKind(element, valueType), null);
+            return new JoinTableMapping(tableName, joinColumns[0].name(), column.name(), element, true, false, valueMapping,
+                    insertSql(tableName, ImmutableList.of(joinColumns[0].name(), column.name())));
+        }
+
+        /**
+         * @param ownerInstance
+         *         entity
+         * @return values in the value column, one row each
+         */
+        Iterable<?> values(Object ownerInstance) {
+            Object value = settable.valueIn(ownerInstance);
+            if (value == null) {
+                return ImmutableList.of();
+            }
+            return collection ? (Collection<?>) value : ImmutableList.of(value);
+        }
+
+        /**
+         * @param value
+         *         one of the values
+         * @return the value to bind to the value column
+         */
+        Object jdbcValue(Object value) {
+            return association ? valueMapping.jdbcValue(value) : valueMapping.toJdbcValue(value);
+        }
+    }
+}
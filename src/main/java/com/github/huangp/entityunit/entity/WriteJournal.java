@@ -0,0 +1,287 @@
+package com.github.huangp.entityunit.entity;
+
+import com.github.huangp.entityunit.util.ClassUtil;
+import com.github.huangp.entityunit.util.Settable;
+import com.google.common.base.Optional;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import lombok.extern.slf4j.Slf4j;
+import org.jodah.typetools.TypeResolver;
+
+import javax.persistence.CollectionTable;
+import javax.persistence.ElementCollection;
+import javax.persistence.EntityManager;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.JoinTable;
+import javax.persistence.ManyToMany;
+import javax.persistence.metamodel.EntityType;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.github.huangp.entityunit.util.HasAnnotationPredicate.has;
+
+/**
+ * Records type and id of each entity EntityMaker writes so that exactly those rows can be deleted afterwards.
+ * <p>
+ * Numeric ids are kept in primitive long arrays per type. Rollback deletes rows in reverse foreign key order using
+ * IN lists of at most {@link WriteJournal#DEFAULT_CHUNK_SIZE} ids. Rows in many to many and element collection tables
+ * referencing recorded entities are deleted first, whichever entity in the persistence unit owns the table. Other rows
+ * (i.e. seed data) are not touched, unless the join column of such a table is not named explicitly. In that case the
+ * whole table is deleted with a warning, the same as EntityCleaner does.
+ * <pre>
+ * {@code
+ *
+ * WriteJournal journal = new WriteJournal();
+ * EntityMaker maker = EntityMakerBuilder.builder().journal(journal).build();
+ * maker.makeAndPersist(entityManager, HDocument.class);
+ * // in @After
+ * maker.rollbackJournal(entityManager);
+ * }
+ * </pre>
+ * It's safe to record from multiple threads.
+ *
+ * @author Patrick Huang
+ * @see EntityMakerBuilder#journal(WriteJournal)
+ * @see EntityMaker#rollbackJournal(EntityManager)
+ */
+@Slf4j
+public class WriteJournal {
+    /**
+     * Maximum number of ids in one IN list.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+
+    private final Map<Class<?>, TypeJournal> journals = Maps.newLinkedHashMap();
+
+    /**
+     * @param entity
+     *         persisted or inserted entity with id assigned
+     */
+    public void record(Object entity) {
+        Serializable id = ClassUtil.getIdentityField(entity).valueIn(entity);
+        if (id == null) {
+            log.warn("entity has no id assigned and is not recorded: {}", entity);
+            return;
+        }
+        Class<?> entityType = entity.getClass();
+        synchronized (journals) {
+            TypeJournal journal = journals.get(entityType);
+            if (journal == null) {
+                journal = new TypeJournal();
+                journals.put(entityType, journal);
+            }
+            journal.add(id);
+        }
+    }
+
+    /**
+     * @param entityType
+     *         entity type
+     * @param id
+     *         entity id
+     * @return whether the entity is recorded
+     */
+    public boolean contains(Class<?> entityType, Serializable id) {
+        synchronized (journals) {
+            TypeJournal journal = journals.get(entityType);
+            return journal != null && journal.contains(id);
+        }
+    }
+
+    /**
+     * @return number of recorded entities
+     */
+    public int size() {
+        synchronized (journals) {
+            int size = 0;
+            for (TypeJournal journal : journals.values()) {
+                size += journal.size();
+            }
+            return size;
+        }
+    }
+
+    /**
+     * @return recorded ids for each type in recording order
+     */
+    public Map<Class<?>, List<Serializable>> getRecorded() {
+        synchronized (journals) {
+            Map<Class<?>, List<Serializable>> recorded = Maps.newLinkedHashMap();
+            for (Map.Entry<Class<?>, TypeJournal> entry : journals.entrySet()) {
+                recorded.put(entry.getKey(), entry.getValue().ids());
+            }
+            return recorded;
+        }
+    }
+
+    /**
+     * Delete all recorded rows and clear the journal.
+     *
+     * @param entityManager
+     *         entity manager with an active transaction
+     */
+    public void rollback(EntityManager entityManager) {
+        Map<Class<?>, List<Serializable>> recorded;
+        synchronized (journals) {
+            recorded = getRecorded();
+            journals.clear();
+        }
+        // referencing tables go first
+        List<Class<?>> deleteOrder = Lists.reverse(DependencyGraph.sortByForeignKeys(recorded.keySet()));
+
+        // join tables may be owned by types that are not recorded (i.e. seed data referencing a recorded entity)
+        Set<Class<?>> ownerTypes = Sets.<Class<?>>newLinkedHashSet(deleteOrder);
+        for (EntityType<?> managedType : entityManager.getMetamodel().getEntities()) {
+            if (managedType.getJavaType() != null) {
+                ownerTypes.add(managedType.getJavaType());
+            }
+        }
+        for (Class<?> ownerType : ownerTypes) {
+            for (Settable element : EntityClass.from(ownerType).getElements()) {
+                deleteAssociationRows(entityManager, ownerType, element, recorded);
+            }
+        }
+        for (Class<?> entityType : deleteOrder) {
+            String idName = Iterables.find(EntityClass.from(entityType).getElements(), has(Id.class)).getSimpleName();
+            String queryString = String.format("delete from %s e where e.%s in (:ids)",
+                    ClassUtil.getEntityName(entityType), idName);
+            int result = 0;
+            for (List<Serializable> chunk : Lists.partition(recorded.get(entityType), DEFAULT_CHUNK_SIZE)) {
+                result += entityManager.createQuery(queryString).setParameter("ids", chunk).executeUpdate();
+            }
+            log.debug("executed [{}], affected row: {}", queryString, result);
+        }
+    }
+
+    // join table rows referencing recorded entities from either side
+    private static void deleteAssociationRows(EntityManager entityManager, Class<?> ownerType, Settable element,
+            Map<Class<?>, List<Serializable>> recorded) {
+        ManyToMany manyToMany = element.getAnnotation(ManyToMany.class);
+        if (manyToMany == null && !element.isAnnotationPresent(ElementCollection.class)) {
+            return;
+        }
+        if (manyToMany != null && !Strings.isNullOrEmpty(manyToMany.mappedBy())) {
+            // owning side takes care of it
+            return;
+        }
+        List<Serializable> ownerIds = recorded.get(ownerType);
+        List<Serializable> targetIds = manyToMany != null ? recorded.get(elementType(element)) : null;
+        if (ownerIds == null && targetIds == null) {
+            return;
+        }
+        JoinTable joinTable = element.getAnnotation(JoinTable.class);
+        CollectionTable collectionTable = element.getAnnotation(CollectionTable.class);
+        String table = null;
+        JoinColumn[] joinColumns = new JoinColumn[0];
+        if (joinTable != null) {
+            table = joinTable.name();
+            joinColumns = joinTable.joinColumns();
+        } else if (collectionTable != null) {
+            table = collectionTable.name();
+            joinColumns = collectionTable.joinColumns();
+        }
+        if (Strings.isNullOrEmpty(table)) {
+            log.warn("join table of {} is not named explicitly. Rows in it are not deleted",
+                    element.fullyQualifiedName());
+            return;
+        }
+        if (ownerIds != null) {
+            deleteRows(entityManager, table, joinColumns, ownerIds);
+        }
+        if (targetIds != null) {
+            JoinColumn[] inverseJoinColumns = joinTable != null ? joinTable.inverseJoinColumns() : new JoinColumn[0];
+            deleteRows(entityManager, table, inverseJoinColumns, targetIds);
+        }
+    }
+
+    private static Class<?> elementType(Settable element) {
+        Class<?> targetEntity = element.getAnnotation(ManyToMany.class).targetEntity();
+        if (targetEntity != void.class) {
+            return targetEntity;
+        }
+        if (ClassUtil.isMap(element.getType())) {
+            return TypeResolver.resolveRawArguments(element.getType(), Map.class)[1];
+        }
+        return TypeResolver.resolveRawArgument(element.getType(), Collection.class);
+    }
+
+    private static void deleteRows(EntityManager entityManager, String table, JoinColumn[] joinColumns,
+            List<Serializable> ids) {
+        Optional<String> joinColumn = EntityCleaner.joinColumnName(table, joinColumns);
+        if (!joinColumn.isPresent()) {
+            EntityCleaner.deleteTable(entityManager, table);
+            return;
+        }
+        String sqlString = String.format("delete from %s where %s in (:ids)", table, joinColumn.get());
+        int result = 0;
+        for (List<Serializable> chunk : Lists.partition(ids, DEFAULT_CHUNK_SIZE)) {
+            result += entityManager.createNativeQuery(sqlString).setParameter("ids", chunk).executeUpdate();
+        }
+        log.debug("executed [{}], affected row: {}", sqlString, result);
+    }
+
+    private static class TypeJournal {
+        private long[] longIds = new long[16];
+        private int size;
+        private Class<?> longIdType;
+        // ids that can't fit in a long, i.e. String or composite ids
+        private final List<Serializable> otherIds = Lists.newArrayList();
+
+        private void add(Serializable id) {
+            if (id instanceof Long || id instanceof Integer || id instanceof Short) {
+                if (size == longIds.length) {
+                    longIds = Arrays.copyOf(longIds, size * 2);
+                }
+                longIds[size++] = ((Number) id).longValue();
+                longIdType = id.getClass();
+            } else {
+                otherIds.add(id);
+            }
+        }
+
+        private boolean contains(Serializable id) {
+            if (id instanceof Long || id instanceof Integer || id instanceof Short) {
+                long value = ((Number) id).longValue();
+                for (int i = 0; i < size; i++) {
+                    if (longIds[i] == value) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            return otherIds.contains(id);
+        }
+
+        private int size() {
+            return size + otherIds.size();
+        }
+
+        private List<Serializable> ids() {
+            List<Serializable> ids = Lists.newArrayListWithCapacity(size());
+            for (int i = 0; i < size; i++) {
+                ids.add(toId(longIds[i]));
+            }
+            Iterables.addAll(ids, otherIds);
+            return ImmutableList.copyOf(ids);
+        }
+
+        private Serializable toId(long value) {
+            if (longIdType == Integer.class) {
+                return (int) value;
+            }
+            if (longIdType == Short.class) {
+                return (short) value;
+            }
+            return value;
+        }
+    }
+}
@@ -4,13 +4,19 @@ import com.github.huangp.entityunit.entity.EntityMakerBuilder;
 import com.github.huangp.entityunit.maker.ScalarValueMakerFactory;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
 import com.google.common.collect.Maps;
 
-import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Holds created beans so that it can be reused.
+ * <p>
+ * It's safe to share between threads. Outside a scope, beans are put and read straight from a shared concurrent map.
+ * Within a scope (one make call of EntityMaker) a thread sees a stable view: the first time a type is read its
+ * shared bean is pinned for the rest of the scope and beans it puts stay private until the scope ends. Other threads
+ * will see them after that, the last one published wins.
  *
  * @see EntityMakerBuilder
  * @see ScalarValueMakerFactory
@@ -19,18 +25,80 @@ import java.util.Map;
  */
 public class BeanValueHolder {
 
-    private Map<Class<?>, Object> map = Collections.synchronizedMap(Maps.<Class<?>, Object>newIdentityHashMap());
+    private final ConcurrentMap<Class<?>, Object> map = Maps.newConcurrentMap();
+    private final ThreadLocal<Scope> scope = new ThreadLocal<Scope>();
 
     public <T> BeanValueHolder putIfNotNull(Class<T> type, T bean) {
         if (bean != null) {
-            map.put(type, bean);
+            Scope current = scope.get();
+            if (current == null) {
+                map.put(type, bean);
+            } else {
+                current.visible.put(type, bean);
+                current.made.put(type, bean);
+            }
         }
         return this;
     }
 
     public <T> Optional<T> tryGet(Class<T> type) {
-        T instance = (T) map.get(type);
-        return Optional.fromNullable(instance);
+        Scope current = scope.get();
+        if (current == null) {
+            return Optional.fromNullable((T) map.get(type));
+        }
+        Object instance = current.visible.get(type);
+        if (instance == null) {
+            instance = map.get(type);
+            if (instance != null) {
+                current.visible.put(type, instance);
+            }
+        }
+        return Optional.fromNullable((T) instance);
+    }
+
+    /**
+     * Start a scope for current thread. Nested calls join the scope already started.
+     *
+     * @see BeanValueHolder#endScope()
+     */
+    public void beginScope() {
+        Scope current = scope.get();
+        if (current == null) {
+            scope.set(new Scope());
+        } else {
+            current.depth++;
+        }
+    }
+
+    /**
+     * End scope of current thread. When the outermost scope ends, beans put in it are published.
+     *
+     * @see BeanValueHolder#beginScope()
+     */
+    public void endScope() {
+        Scope current = scope.get();
+        Preconditions.checkState(current != null, "no scope started in current thread");
+        if (current.depth > 0) {
+            current.depth--;
+            return;
+        }
+        scope.remove();
+        map.putAll(current.made);
+    }
+
+    /**
+     * Remove bean of given type so that it won't be reused. Beans put in current scope are removed as well.
+     *
+     * @param type
+     *         bean type
+     */
+    public void remove(Class<?> type) {
+        Scope current = scope.get();
+        if (current != null) {
+            current.visible.remove(type);
+            current.made.remove(type);
+        }
+        map.remove(type);
     }
 
     public void clear() {
@@ -48,4 +116,10 @@ public class BeanValueHolder {
                 .add("map", map)
                 .toString();
     }
+
+    private static class Scope {
+        private final Map<Class<?>, Object> visible = Maps.newIdentityHashMap();
+        private final Map<Class<?>, Object> made = Maps.newIdentityHashMap();
+        private int depth;
+    }
 }
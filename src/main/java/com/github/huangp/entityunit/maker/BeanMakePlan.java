@@ -0,0 +1,139 @@
+package com.github.huangp.entityunit.maker;
+
+import com.github.huangp.entityunit.entity.EntityClass;
+import com.github.huangp.entityunit.entity.MakeContext;
+import com.github.huangp.entityunit.util.Accessor;
+import com.github.huangp.entityunit.util.Accessors;
+import com.github.huangp.entityunit.util.ClassMetadata;
+import com.github.huangp.entityunit.util.ClassUtil;
+import com.github.huangp.entityunit.util.Settable;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Sets;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import javax.persistence.Id;
+import javax.persistence.Version;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Set;
+
+import static com.github.huangp.entityunit.util.HasAnnotationPredicate.has;
+
+/**
+ * Everything BeanMaker needs to know about a class, worked out once and then reused for every bean of that class.
+ * <p>
+ * It contains the constructor to use, makers for its parameters and all settable elements that are candidates for
+ * population together with their makers and accessors. Whether a candidate has default value depends on the
+ * instance so it's still checked every time.
+ *
+ * @author Patrick Huang
+ * @see BeanMaker
+ * @see MakeContext#getBeanMakePlan(Class)
+ */
+@Getter(AccessLevel.PACKAGE)
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public final class BeanMakePlan<T> {
+    private final Class<T> type;
+    private final Constructor<T> constructor;
+    private final List<Settable> constructorParameters;
+    private final List<Maker<?>> constructorParameterMakers;
+    private final List<Settable> settables;
+    private final List<Maker<?>> settableMakers;
+    private final List<Accessor> settableAccessors;
+
+    /**
+     * Factory method.
+     *
+     * @param type
+     *         bean type
+     * @param context
+     *         make context that resolves makers
+     * @param <T>
+     *         bean type
+     * @return compiled plan
+     */
+    public static <T> BeanMakePlan<T> compile(Class<T> type, MakeContext context) {
+        ScalarValueMakerFactory factory = new ScalarValueMakerFactory(context);
+
+        ClassMetadata<T> metadata = ClassMetadata.of(type);
+        List<Settable> parameters = metadata.getConstructorParameters();
+
+        Predicate<Settable> candidatePredicate = Predicates.not(
+                Predicates.<Settable>or(
+                        new SameTypePredicate(type),
+                        CollectionTypePredicate.PREDICATE,
+                        IdOrVersionPredicate.PREDICATE));
+        List<Settable> settables = ImmutableList.copyOf(
+                Iterables.filter(EntityClass.from(type).getElements(), candidatePredicate));
+
+        return new BeanMakePlan<T>(type, metadata.getConstructor(),
+                parameters, resolveMakers(factory, parameters),
+                settables, resolveMakers(factory, settables),
+                bindAccessors(metadata, settables));
+    }
+
+    /**
+     * @return types of non entity beans this plan will make for its constructor parameters and settables. Each of them
+     * has its own plan in the same context.
+     */
+    public Set<Class<?>> getNestedBeanTypes() {
+        Set<Class<?>> types = Sets.newLinkedHashSet();
+        for (Maker<?> maker : Iterables.concat(constructorParameterMakers, settableMakers)) {
+            if (maker instanceof BeanMaker) {
+                types.add(((BeanMaker<?>) maker).getType());
+            }
+        }
+        return types;
+    }
+
+    private static List<Accessor> bindAccessors(ClassMetadata<?> metadata, List<Settable> settables) {
+        ImmutableList.Builder<Accessor> builder = ImmutableList.builder();
+        for (Settable settable : settables) {
+            builder.add(Accessors.bind(metadata.getType(), settable, metadata.isAccessTypeIsField()));
+        }
+        return builder.build();
+    }
+
+    private static List<Maker<?>> resolveMakers(ScalarValueMakerFactory factory, List<Settable> settables) {
+        ImmutableList.Builder<Maker<?>> builder = ImmutableList.builder();
+        for (Settable settable : settables) {
+            builder.add(factory.from(settable));
+        }
+        return builder.build();
+    }
+
+    @RequiredArgsConstructor
+    private static class SameTypePredicate implements Predicate<Settable> {
+        private final Class type;
+
+        @Override
+        public boolean apply(Settable input) {
+            return input.getType().equals(type);
+        }
+    }
+
+    private static enum CollectionTypePredicate implements Predicate<Settable> {
+        PREDICATE;
+
+        @Override
+        public boolean apply(Settable input) {
+            Type type = input.getType();
+            return ClassUtil.isCollection(type) || ClassUtil.isMap(type);
+        }
+    }
+
+    private static enum IdOrVersionPredicate implements Predicate<Settable> {
+        PREDICATE;
+
+        @Override
+        public boolean apply(Settable input) {
+            return has(Id.class).apply(input) || has(Version.class).apply(input);
+        }
+    }
+}
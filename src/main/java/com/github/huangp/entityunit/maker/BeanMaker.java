@@ -1,25 +1,20 @@
 package com.github.huangp.entityunit.maker;
 
-import com.github.huangp.entityunit.entity.EntityClass;
 import com.github.huangp.entityunit.entity.MakeContext;
+import com.github.huangp.entityunit.util.Accessor;
 import com.github.huangp.entityunit.util.ClassUtil;
+import com.github.huangp.entityunit.util.PrimitiveFieldWriter;
 import com.github.huangp.entityunit.util.Settable;
 import com.google.common.base.*;
-import com.google.common.collect.Iterables;
-import com.google.common.collect.Lists;
+import lombok.AccessLevel;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.beanutils.BeanUtils;
 
-import javax.persistence.Id;
-import javax.persistence.Version;
 import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Type;
 import java.util.List;
 
-import static com.github.huangp.entityunit.util.HasAnnotationPredicate.has;
-
 /**
  * The core maker that makes java bean.
  * <p>
@@ -34,24 +29,25 @@ import static com.github.huangp.entityunit.util.HasAnnotationPredicate.has;
  *      - Made field value that SkipFieldValueMaker#shouldSkipThisField(java.lang.Object) returns true.
  *        i.e. for primitive type fields, in some cases we may want to provide a value but in other cases the value may
  *        be derived from constructor parameter or populated in PrePersist method.
- * 4. If class is entity class and has access type of field, it will use reflection to set field value.
+ * 4. If class is entity class and has access type of field, it will use reflection to set field value. Primitive
+ *    fields made by IntMaker, LongMaker, DoubleMaker or BooleanMaker are set without boxing.
  *    Otherwise it uses commons bean util to populate properties (which will ignore protected setters).
  * </pre>
  *
  * @see ScalarValueMakerFactory
+ * @see BeanMakePlan
  * @see SkipFieldValueMaker
  * @author Patrick Huang
  */
 @Slf4j
 public class BeanMaker<T> implements Maker<T> {
+    @Getter(AccessLevel.PACKAGE)
     private final Class<T> type;
     private final MakeContext context;
-    private final ScalarValueMakerFactory factory;
 
     public BeanMaker(Class<T> type, MakeContext context) {
         this.type = type;
         this.context = context;
-        factory = new ScalarValueMakerFactory(context);
     }
 
     @Override
@@ -59,8 +55,8 @@ public class BeanMaker<T> implements Maker<T> {
         T result = null;
         log.debug(">>> bean: {}", type.getName());
         try {
-            Constructor<T> constructor = ClassUtil.findMostArgsConstructor(type);
-            result = constructBean(constructor);
+            BeanMakePlan<T> plan = context.getBeanMakePlan(type);
+            result = constructBean(plan);
 
             // if we can find public static constants defined in the class, we will use that as value
             Optional<T> constants = ClassUtil.tryFindPublicConstants(type, result);
@@ -69,7 +65,7 @@ public class BeanMaker<T> implements Maker<T> {
             }
 
             // populate all fields
-            return setApplicableFields(result);
+            return setApplicableFields(plan, result);
         } catch (Exception e) {
             throw Throwables.propagate(e);
         } finally {
@@ -79,20 +75,18 @@ public class BeanMaker<T> implements Maker<T> {
         }
     }
 
-    private T constructBean(Constructor<T> constructor) {
+    private T constructBean(BeanMakePlan<T> plan) {
         // this may override some default values provided at field declaration. See HCopyTransOptions
-        List<Settable> parameters = ClassUtil.getConstructorParameters(constructor, type);
-        List<Object> paramValues = Lists.transform(parameters, new Function<Settable, Object>() {
-            @Override
-            public Object apply(Settable input) {
-                return factory.from(input).value();
-            }
-        });
+        List<Maker<?>> parameterMakers = plan.getConstructorParameterMakers();
+        Object[] paramValues = new Object[parameterMakers.size()];
+        for (int i = 0; i < paramValues.length; i++) {
+            paramValues[i] = parameterMakers.get(i).value();
+        }
 
+        Constructor<T> constructor = plan.getConstructor();
         try {
-            log.debug("invoke {} constructor with parameters {}", type, parameters);
-            constructor.setAccessible(true);
-            return constructor.newInstance(paramValues.toArray());
+            log.debug("invoke {} constructor with parameters {}", type, plan.getConstructorParameters());
+            return constructor.newInstance(paramValues);
         } catch (Exception e) {
             log.warn("fail calling constructor method: {}. Will fall back to default constructor", constructor);
             log.warn("exception {}", e.getMessage());
@@ -101,38 +95,35 @@ public class BeanMaker<T> implements Maker<T> {
         }
     }
 
-    private T setApplicableFields(T result) throws InvocationTargetException, IllegalAccessException {
-        Iterable<Settable> elements = EntityClass.from(type).getElements();
-
-        Predicate<Settable> settablePredicate = Predicates.not(
-                Predicates.<Settable>or(
-                        new SameTypePredicate(result.getClass()),
-                        CollectionTypePredicate.PREDICATE,
-                        new HasDefaultValuePredicate<T>(result),
-                        IdOrVersionPredicate.PREDICATE));
+    private T setApplicableFields(BeanMakePlan<T> plan, T result) {
+        List<Settable> settables = plan.getSettables();
+        List<Maker<?>> makers = plan.getSettableMakers();
+        List<Accessor> accessors = plan.getSettableAccessors();
+        Predicate<Settable> hasDefaultValue = new HasDefaultValuePredicate<T>(result);
 
-        Iterable<Settable> fieldsToSet = Iterables.filter(elements, settablePredicate);
-        for (Settable settable : fieldsToSet) {
-            trySetValue(result, settable);
+        for (int i = 0; i < settables.size(); i++) {
+            Settable settable = settables.get(i);
+            if (!hasDefaultValue.apply(settable)) {
+                trySetValue(result, settable, makers.get(i), accessors.get(i));
+            }
         }
         return result;
-
     }
 
-    private void trySetValue(T result, Settable settable) {
+    private void trySetValue(T result, Settable settable, Maker<?> maker, Accessor accessor) {
         log.trace("about to make {}", settable);
-        Object fieldValue = factory.from(settable).value();
+        if (accessor instanceof PrimitiveFieldWriter && trySetPrimitive(result, settable.getType(), maker,
+                (PrimitiveFieldWriter) accessor)) {
+            return;
+        }
+        Object fieldValue = maker.value();
         // this is ugly. But don't want to change the whole design to fit this feature
         if (fieldValue == null || SkipFieldValueMaker.shouldSkipThisField(fieldValue)) {
             return;
         }
         log.trace("made value {}", fieldValue);
         try {
-            if (ClassUtil.isAccessTypeIsField(type)) {
-                ClassUtil.setValue(settable, result, fieldValue);
-            } else {
-                BeanUtils.setProperty(result, settable.getSimpleName(), fieldValue);
-            }
+            accessor.set(result, fieldValue);
         } catch (Exception e) {
             log.warn("can not set property: {}={}", settable, fieldValue);
             log.warn("exception {}", e.getMessage());
@@ -145,24 +136,26 @@ public class BeanMaker<T> implements Maker<T> {
         }
     }
 
-    @RequiredArgsConstructor
-    private static class SameTypePredicate implements Predicate<Settable> {
-        private final Class type;
-
-        @Override
-        public boolean apply(Settable input) {
-            return input.getType().equals(type);
+    // write primitive straight into primitive field without boxing
+    private static boolean trySetPrimitive(Object result, Type settableType, Maker<?> maker,
+            PrimitiveFieldWriter writer) {
+        if (settableType == int.class && maker instanceof IntMaker) {
+            writer.setInt(result, ((IntMaker) maker).intValue());
+            return true;
         }
-    }
-
-    private static enum CollectionTypePredicate implements Predicate<Settable> {
-        PREDICATE;
-
-        @Override
-        public boolean apply(Settable input) {
-            Type type = input.getType();
-            return ClassUtil.isCollection(type) || ClassUtil.isMap(type);
+        if (settableType == long.class && maker instanceof LongMaker) {
+            writer.setLong(result, ((LongMaker) maker).longValue());
+            return true;
+        }
+        if (settableType == double.class && maker instanceof DoubleMaker) {
+            writer.setDouble(result, ((DoubleMaker) maker).doubleValue());
+            return true;
+        }
+        if (settableType == boolean.class && maker instanceof BooleanMaker) {
+            writer.setBoolean(result, ((BooleanMaker) maker).booleanValue());
+            return true;
         }
+        return false;
     }
 
     @RequiredArgsConstructor
@@ -186,13 +179,4 @@ public class BeanMaker<T> implements Maker<T> {
         }
 
     }
-
-    private static enum IdOrVersionPredicate implements Predicate<Settable> {
-        PREDICATE;
-
-        @Override
-        public boolean apply(Settable input) {
-            return has(Id.class).apply(input) || has(Version.class).apply(input);
-        }
-    }
 }
@@ -0,0 +1,19 @@
+package com.github.huangp.entityunit.maker;
+
+/**
+ * Maker of primitive boolean values.
+ * <p>
+ * BeanMaker writes {@link #booleanValue()} straight into a primitive boolean field without boxing.
+ * {@link #value()} is only used where an object is needed (i.e. constructor parameters or properties set through
+ * setters).
+ *
+ * @author Patrick Huang
+ * @see BeanMaker
+ */
+public interface BooleanMaker extends Maker<Boolean> {
+
+    /**
+     * @return a made value
+     */
+    boolean booleanValue();
+}
@@ -0,0 +1,19 @@
+package com.github.huangp.entityunit.maker;
+
+/**
+ * Maker of primitive double values.
+ * <p>
+ * BeanMaker writes {@link #doubleValue()} straight into a primitive double field without boxing.
+ * {@link #value()} is only used where an object is needed (i.e. constructor parameters or properties set through
+ * setters).
+ *
+ * @author Patrick Huang
+ * @see BeanMaker
+ */
+public interface DoubleMaker extends Maker<Double> {
+
+    /**
+     * @return a made value
+     */
+    double doubleValue();
+}
@@ -0,0 +1,19 @@
+package com.github.huangp.entityunit.maker;
+
+/**
+ * Maker of primitive int values.
+ * <p>
+ * BeanMaker writes {@link #intValue()} straight into a primitive int field without boxing.
+ * {@link #value()} is only used where an object is needed (i.e. constructor parameters or properties set through
+ * setters).
+ *
+ * @author Patrick Huang
+ * @see BeanMaker
+ */
+public interface IntMaker extends Maker<Integer> {
+
+    /**
+     * @return a made value
+     */
+    int intValue();
+}
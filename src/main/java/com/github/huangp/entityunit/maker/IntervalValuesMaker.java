@@ -8,7 +8,7 @@ import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A maker that will return interval value from a starting point.
- * This class has only factory methods.
+ * This class has only factory methods. Made makers are thread safe and lock free.
  *
  * @author Patrick Huang
  */
@@ -61,92 +61,108 @@ public abstract class IntervalValuesMaker<T> implements Maker<T> {
      */
     public static <T> Maker<T> startFrom(T start, long difference) {
         if (Integer.class.isInstance(start)) {
-            return new IntervalIntegerValuesMaker<T>(start, difference);
+            return (Maker<T>) intsFrom((Integer) start, difference);
         }
         if (Long.class.isInstance(start)) {
-            return new IntervalLongValuesMaker<T>(start, difference);
+            return (Maker<T>) longsFrom((Long) start, difference);
         }
         if (Date.class.isInstance(start)) {
-            return new IntervalDateValuesMaker<T>(start, difference);
+            return (Maker<T>) new IntervalDateValuesMaker(((Date) start).getTime(), difference);
         }
         if (String.class.isInstance(start)) {
-            return new IntervalStringValuesMaker<T>((String) start, difference);
+            return (Maker<T>) new IntervalStringValuesMaker((String) start, difference);
         }
         throw new UnsupportedOperationException("only support Number, Date and String type");
     }
 
-    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
-    private static class IntervalIntegerValuesMaker<T> implements Maker<T> {
-        private final T start;
+    /**
+     * @param start
+     *         starting value
+     * @param difference
+     *         interval difference
+     * @return a maker of primitive int interval values. It overflows like int.
+     * @see #startFrom(Object, long)
+     */
+    public static IntMaker intsFrom(int start, long difference) {
+        return new IntervalIntegerValuesMaker(start, difference);
+    }
+
+    /**
+     * @param start
+     *         starting value
+     * @param difference
+     *         interval difference
+     * @return a maker of primitive long interval values
+     * @see #startFrom(Object, long)
+     */
+    public static LongMaker longsFrom(long start, long difference) {
+        return new IntervalLongValuesMaker(start, difference);
+    }
+
+    // the nth value is start + n * difference so that no lock is needed
+    @RequiredArgsConstructor(access = AccessLevel.PROTECTED)
+    private abstract static class AbstractIntervalMaker {
+        private final long start;
         private final long difference;
-        private Integer current;
+        private final AtomicLong count = new AtomicLong();
+
+        protected long next() {
+            return start + count.getAndIncrement() * difference;
+        }
+    }
+
+    private static class IntervalIntegerValuesMaker extends AbstractIntervalMaker implements IntMaker {
+        private IntervalIntegerValuesMaker(int start, long difference) {
+            super(start, difference);
+        }
 
         @Override
-        public T value() {
-            next();
-            return (T) current;
+        public int intValue() {
+            return (int) next();
         }
 
-        private synchronized void next() {
-            if (current == null) {
-                current = (Integer) start;
-            } else {
-                current = Long.valueOf(current + difference).intValue();
-            }
+        @Override
+        public Integer value() {
+            return intValue();
         }
     }
 
-    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
-    private static class IntervalLongValuesMaker<T> implements Maker<T> {
-        private final T start;
-        private final long difference;
-        private Long current;
+    private static class IntervalLongValuesMaker extends AbstractIntervalMaker implements LongMaker {
+        private IntervalLongValuesMaker(long start, long difference) {
+            super(start, difference);
+        }
 
         @Override
-        public T value() {
-            next();
-            return (T) current;
+        public long longValue() {
+            return next();
         }
 
-        private synchronized void next() {
-            if (current == null) {
-                current = (Long) start;
-            } else {
-                current = current + difference;
-            }
+        @Override
+        public Long value() {
+            return longValue();
         }
     }
 
-    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
-    private static class IntervalDateValuesMaker<T> implements Maker<T> {
-        private final T start;
-        private final long difference;
-        private Date current;
-
-        @Override
-        public T value() {
-            next();
-            return (T) current;
+    private static class IntervalDateValuesMaker extends AbstractIntervalMaker implements Maker<Date> {
+        private IntervalDateValuesMaker(long start, long difference) {
+            super(start, difference);
         }
 
-        private synchronized void next() {
-            if (current == null) {
-                current = (Date) start;
-            } else {
-                current = new Date(current.getTime() + difference);
-            }
+        @Override
+        public Date value() {
+            return new Date(next());
         }
     }
 
     @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
-    private static class IntervalStringValuesMaker<T> implements Maker<T> {
+    private static class IntervalStringValuesMaker implements Maker<String> {
         private final String start;
         private final long difference;
-        private AtomicLong current = new AtomicLong(0);
+        private final AtomicLong current = new AtomicLong(0);
 
         @Override
-        public T value() {
-            return (T) (start + current.addAndGet(difference));
+        public String value() {
+            return start + current.addAndGet(difference);
         }
 
     }
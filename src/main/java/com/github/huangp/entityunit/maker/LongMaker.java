@@ -0,0 +1,19 @@
+package com.github.huangp.entityunit.maker;
+
+/**
+ * Maker of primitive long values.
+ * <p>
+ * BeanMaker writes {@link #longValue()} straight into a primitive long field without boxing.
+ * {@link #value()} is only used where an object is needed (i.e. constructor parameters or properties set through
+ * setters).
+ *
+ * @author Patrick Huang
+ * @see BeanMaker
+ */
+public interface LongMaker extends Maker<Long> {
+
+    /**
+     * @return a made value
+     */
+    long longValue();
+}
@@ -1,41 +1,81 @@
 package com.github.huangp.entityunit.maker;
 
+import com.github.huangp.entityunit.util.ClassUtil;
 import com.github.huangp.entityunit.util.Settable;
 import com.google.common.base.Optional;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.primitives.Primitives;
+import lombok.RequiredArgsConstructor;
 
 import javax.persistence.Id;
 import javax.persistence.Version;
 import java.lang.annotation.Annotation;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.google.common.base.Predicates.instanceOf;
 import static com.google.common.base.Predicates.or;
 
 /**
+ * Makes numbers from the sequence of the field/property or constructor parameter, converted to its type.
+ * <p>
+ * Values stay within the NumericRange worked out from the constraint annotations and wrap back to the lowest value
+ * after the highest one.
+ *
  * @author Patrick Huang
+ * @see Sequences
+ * @see NumericRange
  */
+@RequiredArgsConstructor
 class NumberMaker implements Maker<Number> {
-    private static AtomicInteger counter = new AtomicInteger(0);
+    private final Class<?> type;
+    private final NumericRange range;
+    private final Sequences.Sequence sequence;
 
     @Override
     public Number value() {
-        return next();
-    }
-
-    private static int next() {
-        return counter.incrementAndGet();
+        long next = sequence.next();
+        if (range.isWholeNumber()) {
+            long value = range.longValueAt(next);
+            if (type == Long.class || type == Number.class) {
+                return value;
+            }
+            if (type == Integer.class) {
+                return (int) value;
+            }
+            if (type == Short.class) {
+                return (short) value;
+            }
+            if (type == Byte.class) {
+                return (byte) value;
+            }
+            if (type == BigInteger.class) {
+                return BigInteger.valueOf(value);
+            }
+        }
+        BigDecimal value = range.valueAt(next);
+        if (type == Double.class) {
+            return value.doubleValue();
+        }
+        if (type == Float.class) {
+            return value.floatValue();
+        }
+        if (type == BigDecimal.class) {
+            return value;
+        }
+        return value.longValue();
     }
 
-    public static Maker<Number> from(Settable settable) {
+    public static Maker<Number> from(Settable settable, Sequences sequences) {
         List<Annotation> annotations = Lists.newArrayList(settable.getAnnotations());
         Optional<Annotation> idOrVersion = Iterables.tryFind(annotations,
                 or(instanceOf(Id.class), instanceOf(Version.class)));
         if (idOrVersion.isPresent()) {
             return new NullMaker<Number>();
         }
-        return new NumberMaker();
+        Class<?> type = Primitives.wrap(ClassUtil.getRawType(settable.getType()));
+        return new NumberMaker(type, NumericRange.of(settable, type), sequences.of(settable));
     }
 }
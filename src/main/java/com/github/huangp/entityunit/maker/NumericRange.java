@@ -0,0 +1,178 @@
+package com.github.huangp.entityunit.maker;
+
+import com.github.huangp.entityunit.util.Settable;
+import com.google.common.base.Preconditions;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.persistence.Column;
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Digits;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+/**
+ * Valid values of a numeric field/property or constructor parameter, worked out from its annotations once.
+ * <p>
+ * JSR303 Min, Max, DecimalMin, DecimalMax and Digits are honored as well as JPA Column precision and scale. Without
+ * any of them the range is from 1 to the max value of the type. Values are steps of 10^-scale (1 for integral
+ * types, or if no scale is given and whole numbers fit in the range) so that the nth value of a sequence can be
+ * computed without any lookup.
+ *
+ * @author Patrick Huang
+ * @see NumberMaker
+ */
+@Slf4j
+@ToString
+class NumericRange {
+    // decimal places tried when no whole number fits in the range
+    private static final int MAX_SCALE = 10;
+
+    private final int scale;
+    // in units of 10^-scale
+    private final long low;
+    private final long size;
+
+    private NumericRange(int scale, long low, long size) {
+        this.scale = scale;
+        this.low = low;
+        this.size = size;
+    }
+
+    static NumericRange of(Settable settable, Class<?> type) {
+        BigDecimal min = null;
+        BigDecimal max = typeMax(type);
+        // lowest value representable, not a preferred start
+        BigDecimal floor = typeMin(type);
+        Integer fractionDigits = null;
+
+        Min minAnnotation = settable.getAnnotation(Min.class);
+        if (minAnnotation != null) {
+            min = BigDecimal.valueOf(minAnnotation.value());
+        }
+        DecimalMin decimalMin = settable.getAnnotation(DecimalMin.class);
+        if (decimalMin != null) {
+            min = larger(min, new BigDecimal(decimalMin.value()));
+        }
+        Max maxAnnotation = settable.getAnnotation(Max.class);
+        if (maxAnnotation != null) {
+            max = max.min(BigDecimal.valueOf(maxAnnotation.value()));
+        }
+        DecimalMax decimalMax = settable.getAnnotation(DecimalMax.class);
+        if (decimalMax != null) {
+            max = max.min(new BigDecimal(decimalMax.value()));
+        }
+        Digits digits = settable.getAnnotation(Digits.class);
+        if (digits != null) {
+            BigDecimal limit = digitsLimit(digits.integer(), digits.fraction());
+            max = max.min(limit);
+            floor = floor.max(limit.negate());
+            fractionDigits = digits.fraction();
+        }
+        Column column = settable.getAnnotation(Column.class);
+        if (column != null && column.precision() > 0) {
+            BigDecimal limit = digitsLimit(column.precision() - column.scale(), column.scale());
+            max = max.min(limit);
+            floor = floor.max(limit.negate());
+            if (fractionDigits == null || column.scale() < fractionDigits) {
+                fractionDigits = column.scale();
+            }
+        }
+        if (min == null) {
+            // start from 1 unless everything allowed is below it
+            min = max.compareTo(BigDecimal.ONE) >= 0 ? BigDecimal.ONE : floor;
+        }
+        min = min.max(floor);
+        Preconditions.checkState(min.compareTo(max) <= 0, "no valid value for %s between %s and %s",
+                settable.fullyQualifiedName(), min, max);
+        if (isIntegral(type)) {
+            fractionDigits = 0;
+        }
+        return between(settable, min, max, fractionDigits);
+    }
+
+    private static NumericRange between(Settable settable, BigDecimal min, BigDecimal max, Integer fractionDigits) {
+        int maxScale = fractionDigits == null ? MAX_SCALE : fractionDigits;
+        for (int scale = 0; scale <= maxScale; scale++) {
+            BigInteger low = min.movePointRight(scale).setScale(0, RoundingMode.CEILING).toBigIntegerExact();
+            BigInteger high = max.movePointRight(scale).setScale(0, RoundingMode.FLOOR).toBigIntegerExact();
+            if (low.compareTo(high) <= 0) {
+                BigInteger size = high.subtract(low).add(BigInteger.ONE).min(BigInteger.valueOf(Long.MAX_VALUE));
+                log.debug("{} values from {} in steps of 10^-{}", settable, low, scale);
+                return new NumericRange(scale, low.longValue(), size.longValue());
+            }
+        }
+        throw new IllegalStateException("no valid value for " + settable.fullyQualifiedName() + " between " + min
+                + " and " + max + " with " + maxScale + " fraction digits");
+    }
+
+    /**
+     * @param sequence
+     *         a positive number from a sequence
+     * @return the nth value in this range. It wraps back to the lowest value after the highest value.
+     */
+    BigDecimal valueAt(long sequence) {
+        return BigDecimal.valueOf(unitsAt(sequence), scale);
+    }
+
+    /**
+     * @param sequence
+     *         a positive number from a sequence
+     * @return the nth value in this range as long. Only valid for scale 0.
+     */
+    long longValueAt(long sequence) {
+        return unitsAt(sequence);
+    }
+
+    boolean isWholeNumber() {
+        return scale == 0;
+    }
+
+    private long unitsAt(long sequence) {
+        return low + (sequence - 1) % size;
+    }
+
+    // largest value with given digits: 10^integer - 10^-fraction
+    private static BigDecimal digitsLimit(int integerDigits, int fractionDigits) {
+        return BigDecimal.ONE.movePointRight(integerDigits).subtract(BigDecimal.ONE.movePointLeft(fractionDigits));
+    }
+
+    private static BigDecimal larger(BigDecimal current, BigDecimal candidate) {
+        return current == null ? candidate : current.max(candidate);
+    }
+
+    private static boolean isIntegral(Class<?> type) {
+        return type == Long.class || type == Integer.class || type == Short.class || type == Byte.class
+                || type == BigInteger.class;
+    }
+
+    private static BigDecimal typeMax(Class<?> type) {
+        if (type == Integer.class) {
+            return BigDecimal.valueOf(Integer.MAX_VALUE);
+        }
+        if (type == Short.class) {
+            return BigDecimal.valueOf(Short.MAX_VALUE);
+        }
+        if (type == Byte.class) {
+            return BigDecimal.valueOf(Byte.MAX_VALUE);
+        }
+        return BigDecimal.valueOf(Long.MAX_VALUE);
+    }
+
+    private static BigDecimal typeMin(Class<?> type) {
+        if (type == Integer.class) {
+            return BigDecimal.valueOf(Integer.MIN_VALUE);
+        }
+        if (type == Short.class) {
+            return BigDecimal.valueOf(Short.MIN_VALUE);
+        }
+        if (type == Byte.class) {
+            return BigDecimal.valueOf(Byte.MIN_VALUE);
+        }
+        return BigDecimal.valueOf(Long.MIN_VALUE);
+    }
+}
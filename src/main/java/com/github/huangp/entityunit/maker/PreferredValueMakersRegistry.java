@@ -4,14 +4,20 @@ import com.github.huangp.entityunit.util.Settable;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
 import org.hamcrest.Matcher;
-import org.hamcrest.Matchers;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * As the name suggested if random value is not desirable for some fields, you can register a custom maker for them.
+ * <p>
+ * Makers registered for a field, property or constructor parameter by name are kept in a hash index.
+ * Custom matchers are only scanned (in registration order) when there is no exact match.
+ * The resolved result for each settable name is remembered until the registry is changed.
  *
  * @author Patrick Huang
  * @see Settable
@@ -20,7 +26,9 @@ import java.util.Map;
  */
 public class PreferredValueMakersRegistry {
 
-    private Map<Matcher<?>, Maker<?>> makers = new HashMap<Matcher<?>, Maker<?>>();
+    private final Map<String, Maker<?>> exactMakers = new HashMap<String, Maker<?>>();
+    private final Map<Matcher<?>, Maker<?>> makers = new LinkedHashMap<Matcher<?>, Maker<?>>();
+    private final ConcurrentMap<String, Optional<Maker<?>>> resolvedMakers = Maps.newConcurrentMap();
 
     /**
      * Add a maker with custom matcher.
@@ -35,6 +43,7 @@ public class PreferredValueMakersRegistry {
         Preconditions.checkNotNull(settableMatcher);
         Preconditions.checkNotNull(maker);
         makers.put(settableMatcher, maker);
+        resolvedMakers.clear();
         return this;
     }
 
@@ -46,7 +55,9 @@ public class PreferredValueMakersRegistry {
      * @return this
      */
     public PreferredValueMakersRegistry merge(PreferredValueMakersRegistry otherRegistry) {
+        exactMakers.putAll(otherRegistry.exactMakers);
         makers.putAll(otherRegistry.makers);
+        resolvedMakers.clear();
         return this;
     }
 
@@ -74,8 +85,7 @@ public class PreferredValueMakersRegistry {
     public PreferredValueMakersRegistry addFieldOrPropertyMaker(Class ownerType, String propertyName, Maker<?> maker) {
         Preconditions.checkNotNull(ownerType);
         Preconditions.checkNotNull(propertyName);
-        makers.put(Matchers.equalTo(String.format(Settable.FULL_NAME_FORMAT, ownerType.getName(), propertyName)), maker);
-        return this;
+        return addExactMaker(String.format(Settable.FULL_NAME_FORMAT, ownerType.getName(), propertyName), maker);
     }
 
     /**
@@ -102,13 +112,20 @@ public class PreferredValueMakersRegistry {
     public PreferredValueMakersRegistry addConstructorParameterMaker(Class ownerType, int argIndex, Maker<?> maker) {
         Preconditions.checkNotNull(ownerType);
         Preconditions.checkArgument(argIndex >= 0);
-        makers.put(Matchers.equalTo(String.format(Settable.FULL_NAME_FORMAT, ownerType.getName(), "arg" + argIndex)), maker);
+        return addExactMaker(String.format(Settable.FULL_NAME_FORMAT, ownerType.getName(), "arg" + argIndex), maker);
+    }
+
+    private PreferredValueMakersRegistry addExactMaker(String fullyQualifiedName, Maker<?> maker) {
+        Preconditions.checkNotNull(maker);
+        exactMakers.put(fullyQualifiedName, maker);
+        resolvedMakers.clear();
         return this;
     }
 
     /**
      * Try to get a registered maker for a settable.
-     * It will use the key (Matcher) to match com.github.huangp.entityunit.util.Settable#fullyQualifiedName(),
+     * It will first look up makers registered by owner type and name.
+     * Otherwise it will use the key (Matcher) to match com.github.huangp.entityunit.util.Settable#fullyQualifiedName(),
      * if there is a match found, it will return that.
      *
      * @param settable
@@ -116,9 +133,23 @@ public class PreferredValueMakersRegistry {
      * @return Optional maker
      */
     public Optional<Maker<?>> getMaker(Settable settable) {
-        for (Matcher<?> matcher : makers.keySet()) {
-            if (matcher.matches(settable.fullyQualifiedName())) {
-                return Optional.<Maker<?>>of(makers.get(matcher));
+        String fullyQualifiedName = settable.fullyQualifiedName();
+        Optional<Maker<?>> resolved = resolvedMakers.get(fullyQualifiedName);
+        if (resolved == null) {
+            resolved = resolveMaker(fullyQualifiedName);
+            resolvedMakers.putIfAbsent(fullyQualifiedName, resolved);
+        }
+        return resolved;
+    }
+
+    private Optional<Maker<?>> resolveMaker(String fullyQualifiedName) {
+        Maker<?> exactMaker = exactMakers.get(fullyQualifiedName);
+        if (exactMaker != null) {
+            return Optional.<Maker<?>>of(exactMaker);
+        }
+        for (Map.Entry<Matcher<?>, Maker<?>> entry : makers.entrySet()) {
+            if (entry.getKey().matches(fullyQualifiedName)) {
+                return Optional.<Maker<?>>of(entry.getValue());
             }
         }
         return Optional.absent();
@@ -130,13 +161,16 @@ public class PreferredValueMakersRegistry {
      * @return this
      */
     public PreferredValueMakersRegistry clear() {
+        exactMakers.clear();
         makers.clear();
+        resolvedMakers.clear();
         return this;
     }
 
     @Override
     public String toString() {
         return MoreObjects.toStringHelper(this)
+                .add("exactMakers", exactMakers)
                 .add("makers", makers)
                 .toString();
     }
@@ -6,6 +6,10 @@ import com.google.common.base.Preconditions;
 import java.lang.reflect.Type;
 
 /**
+ * Makes default value of a primitive type.
+ * <p>
+ * Use {@link #of(java.lang.reflect.Type)} to get a primitive specialized maker for int, long, double and boolean.
+ *
  * @author Patrick Huang
  */
 class PrimitiveMaker implements Maker {
@@ -16,8 +20,80 @@ class PrimitiveMaker implements Maker {
         this.type = (Class<?>) type;
     }
 
+    static Maker<?> of(Type type) {
+        if (type == int.class) {
+            return DefaultIntMaker.MAKER;
+        }
+        if (type == long.class) {
+            return DefaultLongMaker.MAKER;
+        }
+        if (type == double.class) {
+            return DefaultDoubleMaker.MAKER;
+        }
+        if (type == boolean.class) {
+            return DefaultBooleanMaker.MAKER;
+        }
+        return new PrimitiveMaker(type);
+    }
+
     @Override
     public Object value() {
         return Defaults.defaultValue(type);
     }
+
+    private static enum DefaultIntMaker implements IntMaker {
+        MAKER;
+
+        @Override
+        public int intValue() {
+            return 0;
+        }
+
+        @Override
+        public Integer value() {
+            return 0;
+        }
+    }
+
+    private static enum DefaultLongMaker implements LongMaker {
+        MAKER;
+
+        @Override
+        public long longValue() {
+            return 0L;
+        }
+
+        @Override
+        public Long value() {
+            return 0L;
+        }
+    }
+
+    private static enum DefaultDoubleMaker implements DoubleMaker {
+        MAKER;
+
+        @Override
+        public double doubleValue() {
+            return 0D;
+        }
+
+        @Override
+        public Double value() {
+            return 0D;
+        }
+    }
+
+    private static enum DefaultBooleanMaker implements BooleanMaker {
+        MAKER;
+
+        @Override
+        public boolean booleanValue() {
+            return false;
+        }
+
+        @Override
+        public Boolean value() {
+            return false;
+        }
+    }
 }
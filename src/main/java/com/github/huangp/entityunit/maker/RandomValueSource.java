@@ -0,0 +1,115 @@
+package com.github.huangp.entityunit.maker;
+
+import com.google.common.base.Preconditions;
+import lombok.ToString;
+
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ValueSource backed by one java.util.Random per thread.
+ * <p>
+ * Each thread gets its own random stream derived from a single seed and the order in which threads first ask for a
+ * value, so threads never share a Random. With the same seed, values are reproducible only when they are all made
+ * from one thread. When several threads make values, which thread gets which stream depends on scheduling, so the
+ * values each thread (and therefore each entity) gets can differ from run to run. To make values reproducible across
+ * threads, split the work into fixed units and give each unit its own source from {@link #derive(long)}, as
+ * DatasetBuilder does for each slice.
+ * <pre>
+ * {@code
+ *
+ * EntityMaker maker = EntityMakerBuilder.builder()
+ *         .valueSource(RandomValueSource.seeded(42L))
+ *         .build();
+ * }
+ * </pre>
+ * The {@link #DEFAULT} one is seeded randomly, uses real current time and is shared by all EntityMaker by default.
+ *
+ * @author Patrick Huang
+ */
+@ToString(of = {"seed", "now"})
+public class RandomValueSource implements ValueSource {
+    /**
+     * Value source used unless one is given to EntityMakerBuilder.
+     */
+    public static final RandomValueSource DEFAULT = new RandomValueSource(System.nanoTime(), null);
+
+    // 2014-01-01T00:00:00Z
+    private static final long SEEDED_NOW = 1388534400000L;
+    private static final String LETTERS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private final long seed;
+    private final Long now;
+    private final AtomicInteger threadCount = new AtomicInteger();
+    private final ThreadLocal<Random> randoms = new ThreadLocal<Random>() {
+        @Override
+        protected Random initialValue() {
+            return new Random(mix(seed + GOLDEN_GAMMA * threadCount.incrementAndGet()));
+        }
+    };
+
+    private RandomValueSource(long seed, Long now) {
+        this.seed = seed;
+        this.now = now;
+    }
+
+    /**
+     * @param seed
+     *         seed of all random values
+     * @return a value source that makes the same values for the same seed. Now is always 2014-01-01 UTC.
+     */
+    public static RandomValueSource seeded(long seed) {
+        return seeded(seed, new Date(SEEDED_NOW));
+    }
+
+    /**
+     * @param seed
+     *         seed of all random values
+     * @param now
+     *         fixed date to use as now
+     * @return a value source that makes the same values for the same seed
+     */
+    public static RandomValueSource seeded(long seed, Date now) {
+        return new RandomValueSource(seed, now.getTime());
+    }
+
+    /**
+     * @param key
+     *         stable key of a unit of work, i.e. a slice index
+     * @return a value source seeded from this seed and the key, with the same now. Used by one thread, it makes the
+     *         same values for the same seed and key no matter which thread it runs on.
+     */
+    public RandomValueSource derive(long key) {
+        return new RandomValueSource(mix(seed + GOLDEN_GAMMA * (key + 1)), now);
+    }
+
+    @Override
+    public int nextInt(int bound) {
+        Preconditions.checkArgument(bound > 0, "bound must be positive: %s", bound);
+        return randoms.get().nextInt(bound);
+    }
+
+    @Override
+    public String nextAlphabetic(int length) {
+        Random random = randoms.get();
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = LETTERS.charAt(random.nextInt(LETTERS.length()));
+        }
+        return new String(chars);
+    }
+
+    @Override
+    public Date now() {
+        return now == null ? new Date() : new Date(now);
+    }
+
+    // spread sequential seeds over all bits (SplitMix64 finalizer)
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -1,25 +1,38 @@
 package com.github.huangp.entityunit.maker;
 
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Iterables;
 
-import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Define a range of values to return.
+ * <p>
+ * It's thread safe. Each value is handed out exactly once per round even when called from multiple threads.
  *
  * @author Patrick Huang
  */
 public class RangeValuesMaker<T> implements Maker<T> {
-    private final Iterator<T> iterator;
+    private final List<T> values;
+    private final boolean cycle;
+    private final AtomicLong index = new AtomicLong();
 
-    private RangeValuesMaker(Iterator<T> iterator) {
-        this.iterator = iterator;
+    private RangeValuesMaker(List<T> values, boolean cycle) {
+        this.values = values;
+        this.cycle = cycle;
     }
 
     @Override
     public T value() {
-        return iterator.next();
+        long next = index.getAndIncrement();
+        if (cycle) {
+            return values.get((int) (next % values.size()));
+        }
+        if (next >= values.size()) {
+            throw new NoSuchElementException();
+        }
+        return values.get((int) next);
     }
 
     /**
@@ -35,7 +48,7 @@ public class RangeValuesMaker<T> implements Maker<T> {
      */
     public static <T> Maker<T> cycle(T first, T... rest) {
         ImmutableList<T> values = ImmutableList.<T>builder().add(first).add(rest).build();
-        return new RangeValuesMaker<T>(Iterables.cycle(values).iterator());
+        return new RangeValuesMaker<T>(values, true);
     }
 
     /**
@@ -51,6 +64,6 @@ public class RangeValuesMaker<T> implements Maker<T> {
      */
     public static <T> Maker<T> errorOnEnd(T first, T... rest) {
         ImmutableList<T> values = ImmutableList.<T>builder().add(first).add(rest).build();
-        return new RangeValuesMaker<T>(values.iterator());
+        return new RangeValuesMaker<T>(values, false);
     }
 }
@@ -21,19 +21,23 @@ import java.util.Date;
  * <pre>
  * For primitive type, a maker that uses primitive default values.
  * For String type, a maker that generates random string but respects JSR303 Size annotation and email (if applicable).
+ *     String with JSR303 numeric constraints gets numbers in range.
  * For Date type, a maker that returns current date.
- * For Number type and sub types, a maker that generates random integer.
+ * For Number type and sub types, a maker that generates increasing numbers from a sequence of the settable within
+ *     the range of JSR303 Min, Max, DecimalMin, DecimalMax, Digits and JPA Column precision and scale.
  * For array, collection and map type, a maker always return null.
  * For enum type, a maker returns the first enum constant.
  * For Entity type, it will try to reuse from BeanValueHolder or null.
  * For any other type, assuming it's a bean and return a BeanMaker.
  * </pre>
+ * Random strings and current date come from MakeContext.getValueSource().
  *
  * @author Patrick Huang
  * @see PreferredValueMakersRegistry
  * @see BeanValueHolder
  * @see BeanMaker
  * @see MakeContext
+ * @see ValueSource
  */
 @Slf4j
 @RequiredArgsConstructor
@@ -57,16 +61,16 @@ public class ScalarValueMakerFactory {
         Class<?> rawType = ClassUtil.getRawType(type);
 
         if (ClassUtil.isPrimitive(type)) {
-            return new PrimitiveMaker(type);
+            return PrimitiveMaker.of(type);
         }
         if (type == String.class) {
-            return StringMaker.from(settable);
+            return StringMaker.from(settable, context.getValueSource(), context.getSequences());
         }
         if (type == Date.class) {
-            return new DateMaker();
+            return new DateMaker(context.getValueSource());
         }
         if (Number.class.isAssignableFrom(rawType)) {
-            return NumberMaker.from(settable);
+            return NumberMaker.from(settable, context.getSequences());
         }
         if (ClassUtil.isArray(type)) {
             log.trace("array type: {}", rawType.getComponentType());
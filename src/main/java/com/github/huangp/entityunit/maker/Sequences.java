@@ -0,0 +1,136 @@
+package com.github.huangp.entityunit.maker;
+
+import com.github.huangp.entityunit.util.Settable;
+import com.google.common.collect.Maps;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Number sequences, one for each field/property or constructor parameter.
+ * <p>
+ * Sequences of the same field/property share one JVM wide counter, so a new EntityMaker carries on after the numbers
+ * earlier makers handed out and rows made by different makers won't clash. Threads take a block of numbers at a time
+ * and hand them out from a thread local block, so only taking the next block touches shared state. Numbers are unique
+ * within the JVM but not in order across threads or makers. In a single thread of one maker they are consecutive
+ * until another maker takes a block.
+ * <p>
+ * Sequences belong to a MakeContext (hence an EntityMaker) and can be reset all together. A reset sequence starts
+ * from 1 with a counter of its own, so its numbers may clash with numbers handed out before.
+ * <p>
+ * Sequences from {@link #startingAt(long)} don't share counters at all. They hand out the same numbers every run, at
+ * the cost of the JVM wide uniqueness.
+ *
+ * @author Patrick Huang
+ * @see NumberMaker
+ */
+@Slf4j
+public class Sequences {
+    static final int BLOCK_SIZE = 64;
+
+    // field/property name to next block start of all makers
+    private static final ConcurrentMap<String, AtomicLong> SHARED_COUNTERS = Maps.newConcurrentMap();
+
+    private final ConcurrentMap<String, Sequence> sequences = Maps.newConcurrentMap();
+    // first number of private counters, or null to share JVM wide counters
+    private final Long start;
+
+    public Sequences() {
+        this(null);
+    }
+
+    private Sequences(Long start) {
+        this.start = start;
+    }
+
+    /**
+     * @param start
+     *         first number of every sequence
+     * @return sequences with counters of their own, not shared with any other Sequences
+     */
+    public static Sequences startingAt(long start) {
+        return new Sequences(start);
+    }
+
+    /**
+     * @param settable
+     *         field/property or constructor parameter
+     * @return the sequence for it
+     */
+    public Sequence of(Settable settable) {
+        String name = settable.fullyQualifiedName();
+        Sequence sequence = sequences.get(name);
+        if (sequence == null) {
+            Sequence created = new Sequence(start != null ? new AtomicLong(start) : sharedCounter(name));
+            Sequence existing = sequences.putIfAbsent(name, created);
+            sequence = existing != null ? existing : created;
+        }
+        return sequence;
+    }
+
+    private static AtomicLong sharedCounter(String name) {
+        AtomicLong counter = SHARED_COUNTERS.get(name);
+        if (counter == null) {
+            AtomicLong created = new AtomicLong(1);
+            AtomicLong existing = SHARED_COUNTERS.putIfAbsent(name, created);
+            counter = existing != null ? existing : created;
+        }
+        return counter;
+    }
+
+    /**
+     * Make all sequences start from 1 again. Blocks taken by threads before are discarded. It should not be called
+     * while values are being made.
+     */
+    public void reset() {
+        log.debug("reset {} sequences", sequences.size());
+        for (Sequence sequence : sequences.values()) {
+            sequence.reset();
+        }
+    }
+
+    /**
+     * A number sequence handed out in thread local blocks.
+     */
+    public static class Sequence {
+        private volatile AtomicLong nextBlockStart;
+        private volatile int generation;
+        private final ThreadLocal<Block> blocks = new ThreadLocal<Block>() {
+            @Override
+            protected Block initialValue() {
+                return new Block();
+            }
+        };
+
+        private Sequence(AtomicLong nextBlockStart) {
+            this.nextBlockStart = nextBlockStart;
+        }
+
+        /**
+         * @return next number in this sequence
+         */
+        public long next() {
+            Block block = blocks.get();
+            int currentGeneration = generation;
+            if (block.next == block.end || block.generation != currentGeneration) {
+                block.next = nextBlockStart.getAndAdd(BLOCK_SIZE);
+                block.end = block.next + BLOCK_SIZE;
+                block.generation = currentGeneration;
+            }
+            return block.next++;
+        }
+
+        // leave the shared counter alone so that other makers are not affected
+        private synchronized void reset() {
+            nextBlockStart = new AtomicLong(1);
+            generation++;
+        }
+    }
+
+    private static class Block {
+        private long next;
+        private long end;
+        private int generation;
+    }
+}
@@ -5,13 +5,16 @@ import com.google.common.base.Optional;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang.RandomStringUtils;
 
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Digits;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.Pattern;
 import javax.validation.constraints.Size;
 import java.lang.annotation.Annotation;
+import java.math.BigDecimal;
 
 /**
  * @author Patrick Huang
@@ -23,8 +26,20 @@ class StringMaker implements Maker<String> {
     private final boolean isEmail;
     private final int min;
     private final int max;
+    private final ValueSource valueSource;
+    // for string with numeric constraints
+    private final NumberMaker numberMaker;
 
     public static StringMaker from(Settable settable) {
+        return from(settable, RandomValueSource.DEFAULT, new Sequences());
+    }
+
+    public static StringMaker from(Settable settable, ValueSource valueSource, Sequences sequences) {
+        NumberMaker numberMaker = null;
+        if (hasNumericConstraint(settable)) {
+            numberMaker = new NumberMaker(BigDecimal.class, NumericRange.of(settable, BigDecimal.class),
+                    sequences.of(settable));
+        }
 
         boolean isEmail = false;
         int min = 0;
@@ -42,20 +57,18 @@ class StringMaker implements Maker<String> {
                     max = Math.max(min, DEFAULT_MAX);
                 }
             }
-            if (annotation instanceof Max) {
-                Max maxAnnotation = (Max) annotation;
-                max = Long.valueOf(maxAnnotation.value()).intValue();
-            }
-            if (annotation instanceof Min) {
-                Min minAnnotation = (Min) annotation;
-                // This may lose some precision
-                min = Long.valueOf(minAnnotation.value()).intValue();
-            }
             if (annotation instanceof Pattern) {
                 log.warn("can not auto generate string matches pattern constraint for {}", settable.fullyQualifiedName());
             }
         }
-        return new StringMaker(isEmail, min, max);
+        return new StringMaker(isEmail, min, max, valueSource, numberMaker);
+    }
+
+    // string representation of a number can be constrained like a number
+    private static boolean hasNumericConstraint(Settable settable) {
+        return settable.isAnnotationPresent(Min.class) || settable.isAnnotationPresent(Max.class)
+                || settable.isAnnotationPresent(DecimalMin.class) || settable.isAnnotationPresent(DecimalMax.class)
+                || settable.isAnnotationPresent(Digits.class);
     }
 
     private static boolean looksLikeEmail(Settable settable, Annotation annotation) {
@@ -64,10 +77,13 @@ class StringMaker implements Maker<String> {
 
     @Override
     public String value() {
+        if (numberMaker != null) {
+            return ((BigDecimal) numberMaker.value()).toPlainString();
+        }
         if (isEmail) {
-            return RandomStringUtils.randomAlphabetic(5) + "@nowhere.org";
+            return valueSource.nextAlphabetic(5) + "@nowhere.org";
         }
         int length = Math.min(DEFAULT_MAX, max);
-        return RandomStringUtils.randomAlphabetic(Math.max(length, min));
+        return valueSource.nextAlphabetic(Math.max(length, min));
     }
 }
@@ -0,0 +1,34 @@
+package com.github.huangp.entityunit.maker;
+
+import java.util.Date;
+
+/**
+ * Source of values for the built in makers.
+ * <p>
+ * Implementation must be thread safe and should avoid contention between threads since makers are shared.
+ *
+ * @author Patrick Huang
+ * @see RandomValueSource
+ * @see com.github.huangp.entityunit.entity.EntityMakerBuilder#valueSource(ValueSource)
+ */
+public interface ValueSource {
+
+    /**
+     * @param bound
+     *         upper bound (exclusive). Must be positive.
+     * @return a random int between 0 (inclusive) and bound (exclusive)
+     */
+    int nextInt(int bound);
+
+    /**
+     * @param length
+     *         length of the string
+     * @return a random string of latin letters
+     */
+    String nextAlphabetic(int length);
+
+    /**
+     * @return date used as now
+     */
+    Date now();
+}
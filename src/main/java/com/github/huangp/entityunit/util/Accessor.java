@@ -0,0 +1,29 @@
+package com.github.huangp.entityunit.util;
+
+/**
+ * Reads and writes the value of a field, property or constructor parameter in an owner instance.
+ * <p>
+ * Reflection lookup and access check suppression is done once when the accessor is created.
+ * Calling it repeatedly only costs the actual reflective call.
+ *
+ * @author Patrick Huang
+ * @see Accessors
+ */
+public interface Accessor {
+    /**
+     * @param ownerInstance
+     *         instance that contains the value
+     * @param <T>
+     *         value type
+     * @return value in given instance
+     */
+    <T> T get(Object ownerInstance);
+
+    /**
+     * @param ownerInstance
+     *         instance that contains the value
+     * @param value
+     *         new value
+     */
+    void set(Object ownerInstance, Object value);
+}
@@ -0,0 +1,244 @@
+package com.github.huangp.entityunit.util;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.beanutils.BeanUtilsBean;
+import org.apache.commons.beanutils.ConvertUtilsBean;
+import org.apache.commons.beanutils.Converter;
+import org.apache.commons.beanutils.MethodUtils;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * Factory of Accessor.
+ *
+ * @author Patrick Huang
+ * @see Accessor
+ */
+@Slf4j
+public final class Accessors {
+    private Accessors() {
+    }
+
+    /**
+     * @param field
+     *         field to read and write directly
+     * @return accessor of the field
+     */
+    public static Accessor ofField(Field field) {
+        field.setAccessible(true);
+        return new FieldAccessor(field);
+    }
+
+    /**
+     * @param getterMethod
+     *         getter method
+     * @return a read only accessor
+     */
+    public static Accessor ofGetter(Method getterMethod) {
+        getterMethod.setAccessible(true);
+        return new GetterAccessor(getterMethod);
+    }
+
+    /**
+     * Bind a settable to an accessor that writes the same way as BeanMaker always did.
+     * <p>
+     * If the owner type has access type of field, value will be set to the field directly and the accessor is also a
+     * PrimitiveFieldWriter.
+     * Otherwise it behaves like commons bean util: value is converted and set through public setter
+     * and property without public setter is silently ignored.
+     * <p>
+     * Reading is always delegated to com.github.huangp.entityunit.util.Settable#valueIn(java.lang.Object).
+     *
+     * @param ownerType
+     *         the class that owns the settable
+     * @param settable
+     *         settable
+     * @param accessTypeIsField
+     *         whether owner type uses field access
+     * @return accessor for the settable
+     */
+    public static Accessor bind(Class<?> ownerType, Settable settable, boolean accessTypeIsField) {
+        if (accessTypeIsField) {
+            Optional<Field> field = ClassMetadata.of(ownerType).findField(settable.getSimpleName());
+            if (field.isPresent()) {
+                field.get().setAccessible(true);
+                return new FieldWriteAccessor(settable, field.get());
+            }
+            return new UnsupportedWriteAccessor(settable);
+        }
+        PropertyDescriptor descriptor = ClassMetadata.of(ownerType).getProperties().get(settable.getSimpleName());
+        Method writeMethod = descriptor == null ? null : MethodUtils.getAccessibleMethod(ownerType, descriptor.getWriteMethod());
+        if (writeMethod == null) {
+            return new ReadOnlyPropertyAccessor(settable);
+        }
+        return new SetterAccessor(settable, writeMethod, descriptor.getPropertyType());
+    }
+
+    @RequiredArgsConstructor
+    private static class FieldAccessor implements Accessor {
+        private final Field field;
+
+        @Override
+        public <T> T get(Object ownerInstance) {
+            try {
+                return (T) field.get(ownerInstance);
+            } catch (IllegalAccessException e) {
+                throw Throwables.propagate(e);
+            }
+        }
+
+        @Override
+        public void set(Object ownerInstance, Object value) {
+            try {
+                field.set(ownerInstance, value);
+            } catch (IllegalAccessException e) {
+                throw Throwables.propagate(e);
+            }
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class GetterAccessor implements Accessor {
+        private final Method getterMethod;
+
+        @Override
+        public <T> T get(Object ownerInstance) {
+            try {
+                return (T) getterMethod.invoke(ownerInstance);
+            } catch (Exception e) {
+                throw Throwables.propagate(e);
+            }
+        }
+
+        @Override
+        public void set(Object ownerInstance, Object value) {
+            throw new UnsupportedOperationException("read only accessor: " + getterMethod);
+        }
+    }
+
+    @RequiredArgsConstructor
+    private abstract static class SettableReadAccessor implements Accessor {
+        protected final Settable settable;
+
+        @Override
+        public <T> T get(Object ownerInstance) {
+            return settable.valueIn(ownerInstance);
+        }
+    }
+
+    private static class FieldWriteAccessor extends SettableReadAccessor implements PrimitiveFieldWriter {
+        private final Field field;
+
+        private FieldWriteAccessor(Settable settable, Field field) {
+            super(settable);
+            this.field = field;
+        }
+
+        @Override
+        public void set(Object ownerInstance, Object value) {
+            try {
+                field.set(ownerInstance, value);
+            } catch (IllegalAccessException e) {
+                throw Throwables.propagate(e);
+            }
+        }
+
+        @Override
+        public void setInt(Object ownerInstance, int value) {
+            try {
+                field.setInt(ownerInstance, value);
+            } catch (IllegalAccessException e) {
+                throw Throwables.propagate(e);
+            }
+        }
+
+        @Override
+        public void setLong(Object ownerInstance, long value) {
+            try {
+                field.setLong(ownerInstance, value);
+            } catch (IllegalAccessException e) {
+                throw Throwables.propagate(e);
+            }
+        }
+
+        @Override
+        public void setDouble(Object ownerInstance, double value) {
+            try {
+                field.setDouble(ownerInstance, value);
+            } catch (IllegalAccessException e) {
+                throw Throwables.propagate(e);
+            }
+        }
+
+        @Override
+        public void setBoolean(Object ownerInstance, boolean value) {
+            try {
+                field.setBoolean(ownerInstance, value);
+            } catch (IllegalAccessException e) {
+                throw Throwables.propagate(e);
+            }
+        }
+    }
+
+    private static class UnsupportedWriteAccessor extends SettableReadAccessor {
+        private UnsupportedWriteAccessor(Settable settable) {
+            super(settable);
+        }
+
+        @Override
+        public void set(Object ownerInstance, Object value) {
+            throw new UnsupportedOperationException("no field found for " + settable);
+        }
+    }
+
+    private static class ReadOnlyPropertyAccessor extends SettableReadAccessor {
+        private ReadOnlyPropertyAccessor(Settable settable) {
+            super(settable);
+        }
+
+        @Override
+        public void set(Object ownerInstance, Object value) {
+            log.trace("skipping read-only property {}", settable);
+        }
+    }
+
+    private static class SetterAccessor extends SettableReadAccessor {
+        private final Method setterMethod;
+        private final Class<?> propertyType;
+        private final ConvertUtilsBean convertUtils;
+        private final Converter converter;
+
+        private SetterAccessor(Settable settable, Method setterMethod, Class<?> propertyType) {
+            super(settable);
+            this.setterMethod = setterMethod;
+            this.propertyType = propertyType;
+            convertUtils = BeanUtilsBean.getInstance().getConvertUtils();
+            converter = convertUtils.lookup(propertyType);
+        }
+
+        @Override
+        public void set(Object ownerInstance, Object value) {
+            try {
+                setterMethod.invoke(ownerInstance, convert(value));
+            } catch (Exception e) {
+                throw Throwables.propagate(e);
+            }
+        }
+
+        // same conversion as org.apache.commons.beanutils.BeanUtilsBean#setProperty
+        private Object convert(Object value) {
+            if (value instanceof String) {
+                return convertUtils.convert((String) value, propertyType);
+            }
+            if (value == null || converter == null) {
+                return value;
+            }
+            return converter.convert(propertyType, value);
+        }
+    }
+}
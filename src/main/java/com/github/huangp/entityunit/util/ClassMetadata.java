@@ -0,0 +1,260 @@
+package com.github.huangp.entityunit.util;
+
+import com.github.huangp.entityunit.entity.EntityClass;
+import com.github.huangp.entityunit.entity.MetadataCache;
+import com.google.common.base.Optional;
+import com.google.common.base.Predicate;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import lombok.Getter;
+import lombok.ToString;
+
+import javax.persistence.Access;
+import javax.persistence.AccessType;
+import javax.persistence.Id;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Class level reflection results that never change for a class, computed once and then shared.
+ * <p>
+ * Access type and public constant are worked out when the metadata is created. Identity settable, the constructor with
+ * most arguments, bean properties and fields by name are worked out on first use as not every class needs them (i.e.
+ * super classes and interfaces). Bean introspection therefore happens once per class instead of once per field.
+ * <p>
+ * Metadata is cached in MetadataCache (Java 6 has no ClassValue) so its capacity and stats apply. The metadata holds
+ * the class and its fields, methods and constructors, so a cached entry keeps the class loader reachable until the
+ * soft reference to it is cleared under memory pressure.
+ *
+ * @author Patrick Huang
+ * @see ClassUtil
+ * @see MetadataCache#configure(long)
+ */
+@ToString(of = {"type", "accessTypeIsField"})
+public final class ClassMetadata<T> {
+    @Getter
+    private final Class<T> type;
+    @Getter
+    private final boolean accessTypeIsField;
+    private final Optional<Field> publicConstant;
+    private final Supplier<Settable> identity;
+    private final Supplier<ConstructorInfo<T>> constructor;
+    private final Supplier<Map<String, PropertyDescriptor>> properties;
+    private final Supplier<Map<String, PropertyDescriptor>> declaredProperties;
+    private final Supplier<Map<String, Field>> fields;
+
+    private ClassMetadata(final Class<T> type, boolean accessTypeIsField, Optional<Field> publicConstant) {
+        this.type = type;
+        this.accessTypeIsField = accessTypeIsField;
+        this.publicConstant = publicConstant;
+        this.identity = Suppliers.memoize(new Supplier<Settable>() {
+            @Override
+            public Settable get() {
+                return Iterables.find(EntityClass.from(type).getElements(), HasAnnotationPredicate.has(Id.class));
+            }
+        });
+        this.constructor = Suppliers.memoize(new Supplier<ConstructorInfo<T>>() {
+            @Override
+            public ConstructorInfo<T> get() {
+                Constructor<T> mostArgs = findMostArgsConstructor(type);
+                mostArgs.setAccessible(true);
+                List<Settable> parameters = ClassUtil.getConstructorParameters(mostArgs, type);
+                return new ConstructorInfo<T>(mostArgs, ImmutableList.copyOf(parameters));
+            }
+        });
+        this.properties = Suppliers.memoize(new Supplier<Map<String, PropertyDescriptor>>() {
+            @Override
+            public Map<String, PropertyDescriptor> get() {
+                return indexProperties(type, Object.class);
+            }
+        });
+        this.declaredProperties = Suppliers.memoize(new Supplier<Map<String, PropertyDescriptor>>() {
+            @Override
+            public Map<String, PropertyDescriptor> get() {
+                return indexProperties(type, type.getSuperclass());
+            }
+        });
+        this.fields = Suppliers.memoize(new Supplier<Map<String, Field>>() {
+            @Override
+            public Map<String, Field> get() {
+                return indexFields(type);
+            }
+        });
+    }
+
+    /**
+     * Factory method.
+     *
+     * @param type
+     *         the class
+     * @param <T>
+     *         class type
+     * @return cached metadata of the class
+     */
+    public static <T> ClassMetadata<T> of(final Class<T> type) {
+        return (ClassMetadata<T>) MetadataCache.classMetadata(type, new Callable<ClassMetadata<T>>() {
+            @Override
+            public ClassMetadata<T> call() throws Exception {
+                return create(type);
+            }
+        });
+    }
+
+    private static <T> ClassMetadata<T> create(Class<T> type) {
+        return new ClassMetadata<T>(type, accessTypeIsField(type), findPublicConstant(type));
+    }
+
+    private static boolean accessTypeIsField(Class<?> type) {
+        Access access = type.getAnnotation(Access.class);
+        if (access != null) {
+            return access.value() == AccessType.FIELD;
+        }
+        return Iterables.any(ClassUtil.getAllDeclaredFields(type), HasAnnotationPredicate.has(Id.class));
+    }
+
+    private static Optional<Field> findPublicConstant(final Class<?> type) {
+        List<Field> fields = Lists.newArrayList(type.getDeclaredFields());
+        return Iterables.tryFind(fields, new Predicate<Field>() {
+            @Override
+            public boolean apply(Field input) {
+                int mod = input.getModifiers();
+                return input.getType().equals(type) && Modifier.isPublic(mod) && Modifier.isStatic(mod);
+            }
+        });
+    }
+
+    private static Map<String, PropertyDescriptor> indexProperties(Class<?> type, Class<?> stopClass) {
+        try {
+            PropertyDescriptor[] descriptors = Introspector.getBeanInfo(type, stopClass).getPropertyDescriptors();
+            ImmutableMap.Builder<String, PropertyDescriptor> builder = ImmutableMap.builder();
+            for (PropertyDescriptor descriptor : descriptors) {
+                builder.put(descriptor.getName(), descriptor);
+            }
+            return builder.build();
+        } catch (IntrospectionException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    private static Map<String, Field> indexFields(Class<?> type) {
+        Map<String, Field> fields = Maps.newHashMap();
+        // field in sub class hides the one with same name in super class
+        for (Field field : Lists.reverse(ClassUtil.getAllDeclaredFields(type))) {
+            fields.put(field.getName(), field);
+        }
+        return ImmutableMap.copyOf(fields);
+    }
+
+    private static <T> Constructor<T> findMostArgsConstructor(Class<T> type) {
+        List<Constructor<?>> constructors = Lists.newArrayList(type.getDeclaredConstructors());
+
+        // sort by number of parameters in descending order
+        Collections.sort(constructors, new Comparator<Constructor<?>>() {
+            @Override
+            public int compare(Constructor<?> o1, Constructor<?> o2) {
+                return o2.getParameterTypes().length - o1.getParameterTypes().length;
+            }
+        });
+
+        return (Constructor<T>) constructors.get(0);
+    }
+
+    /**
+     * @return public static field of the same type declared in the class
+     */
+    public Optional<Field> getPublicConstant() {
+        return publicConstant;
+    }
+
+    /**
+     * @return settable annotated with Id
+     * @throws java.util.NoSuchElementException
+     *         if the class has no Id
+     */
+    public Settable getIdentity() {
+        return identity.get();
+    }
+
+    /**
+     * @return declared constructor with most arguments. It's been made accessible.
+     */
+    public Constructor<T> getConstructor() {
+        return constructor.get().constructor;
+    }
+
+    /**
+     * @return parameters of the constructor with most arguments
+     */
+    public List<Settable> getConstructorParameters() {
+        return constructor.get().parameters;
+    }
+
+    /**
+     * @return property descriptors of the class and its super classes (excluding Object) by property name
+     */
+    public Map<String, PropertyDescriptor> getProperties() {
+        return properties.get();
+    }
+
+    /**
+     * @return property descriptors declared in the class only by property name
+     */
+    public Map<String, PropertyDescriptor> getDeclaredProperties() {
+        return declaredProperties.get();
+    }
+
+    /**
+     * @param propertyName
+     *         property name
+     * @return getter of the property or null if there is none
+     */
+    public Method getGetter(String propertyName) {
+        PropertyDescriptor descriptor = getProperties().get(propertyName);
+        return descriptor == null ? null : descriptor.getReadMethod();
+    }
+
+    /**
+     * @param propertyName
+     *         property name
+     * @return setter of the property or null if there is none
+     */
+    public Method getSetter(String propertyName) {
+        PropertyDescriptor descriptor = getProperties().get(propertyName);
+        return descriptor == null ? null : descriptor.getWriteMethod();
+    }
+
+    /**
+     * @param fieldName
+     *         field name
+     * @return non-static and non-transient field of given name declared in the class or its super classes
+     */
+    public Optional<Field> findField(String fieldName) {
+        return Optional.fromNullable(fields.get().get(fieldName));
+    }
+
+    private static class ConstructorInfo<T> {
+        private final Constructor<T> constructor;
+        private final List<Settable> parameters;
+
+        private ConstructorInfo(Constructor<T> constructor, List<Settable> parameters) {
+            this.constructor = constructor;
+            this.parameters = parameters;
+        }
+    }
+}
@@ -1,7 +1,5 @@
 package com.github.huangp.entityunit.util;
 
-import com.github.huangp.entityunit.entity.EntityClass;
-import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
@@ -11,16 +9,9 @@ import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 import lombok.extern.slf4j.Slf4j;
 
-import javax.persistence.Access;
-import javax.persistence.AccessType;
 import javax.persistence.Entity;
-import javax.persistence.Id;
-import java.beans.BeanInfo;
-import java.beans.IntrospectionException;
-import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Constructor;
@@ -31,8 +22,6 @@ import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 
@@ -67,29 +56,11 @@ public final class ClassUtil {
     }
 
     public static Map<String, PropertyDescriptor> getPropertyDescriptors(Class clazz) {
-        try {
-            PropertyDescriptor[] propDesc = Introspector.getBeanInfo(clazz, clazz.getSuperclass()).getPropertyDescriptors();
-            return Maps.uniqueIndex(Lists.newArrayList(propDesc), new Function<PropertyDescriptor, String>() {
-                @Override
-                public String apply(PropertyDescriptor input) {
-                    return input.getName();
-                }
-            });
-        } catch (IntrospectionException e) {
-            throw Throwables.propagate(e);
-        }
+        return ClassMetadata.of(clazz).getDeclaredProperties();
     }
 
     public static <T> Optional<T> tryFindPublicConstants(final Class<T> type, T instance) throws IllegalAccessException {
-        List<Field> fields = Lists.newArrayList(type.getDeclaredFields());
-        Optional<Field> found = Iterables.tryFind(fields, new Predicate<Field>() {
-            @Override
-            public boolean apply(Field input) {
-                int mod = input.getModifiers();
-                Class<?> fieldType = input.getType();
-                return fieldType.equals(type) && Modifier.isPublic(mod) && Modifier.isStatic(mod);
-            }
-        });
+        Optional<Field> found = ClassMetadata.of(type).getPublicConstant();
         if (found.isPresent()) {
             return Optional.of((T) found.get().get(instance));
         }
@@ -97,17 +68,7 @@ public final class ClassUtil {
     }
 
     public static <T> Constructor<T> findMostArgsConstructor(Class<T> type) {
-        List<Constructor<?>> constructors = Lists.newArrayList(type.getDeclaredConstructors());
-
-        // sort by number of parameters in descending order
-        Collections.sort(constructors, new Comparator<Constructor<?>>() {
-            @Override
-            public int compare(Constructor<?> o1, Constructor<?> o2) {
-                return o2.getParameterTypes().length - o1.getParameterTypes().length;
-            }
-        });
-
-        return (Constructor<T>) constructors.get(0);
+        return ClassMetadata.of(type).getConstructor();
     }
 
     // TODO when guava reflection is not @Beta, refactor this to use that
@@ -134,13 +95,7 @@ public final class ClassUtil {
     }
 
     public static boolean isAccessTypeIsField(Class clazz) {
-        Annotation access = clazz.getAnnotation(Access.class);
-        if (access != null) {
-            AccessType accessType = ((Access) access).value();
-            return accessType == AccessType.FIELD;
-        }
-        Optional<Field> fieldAnnotatedById = Iterables.tryFind(getAllDeclaredFields(clazz), HasAnnotationPredicate.has(Id.class));
-        return fieldAnnotatedById.isPresent();
+        return ClassMetadata.of(clazz).isAccessTypeIsField();
     }
 
     public static boolean isCollection(Type type) {
@@ -189,17 +144,7 @@ public final class ClassUtil {
     }
 
     public static Method getterMethod(Class type, String name) {
-        try {
-            BeanInfo beanInfo = Introspector.getBeanInfo(type, Object.class);
-            for (PropertyDescriptor propertyDescriptor : beanInfo.getPropertyDescriptors()) {
-                if (propertyDescriptor.getName().equals(name)) {
-                    return propertyDescriptor.getReadMethod();
-                }
-            }
-        } catch (IntrospectionException e) {
-            throw Throwables.propagate(e);
-        }
-        return null;
+        return ClassMetadata.of(type).getGetter(name);
     }
 
     public static boolean isUnsaved(Object entity) {
@@ -212,7 +157,7 @@ public final class ClassUtil {
     }
 
     public static Settable getIdentityField(Object entity) {
-        return Iterables.find(EntityClass.from(entity.getClass()).getElements(), HasAnnotationPredicate.has(Id.class));
+        return ClassMetadata.of(entity.getClass()).getIdentity();
     }
 
     public static void setValue(Settable settable, Object owner, Object value) {
@@ -232,16 +177,6 @@ public final class ClassUtil {
         }
     }
 
-    static <T> T getFieldValue(Object ownerInstance, Field field) {
-        try {
-            field.setAccessible(true);
-            return (T) field.get(ownerInstance);
-        }
-        catch (IllegalAccessException e) {
-            throw Throwables.propagate(e);
-        }
-    }
-
     public static String getEntityName(Class<?> entityType) {
         Preconditions.checkArgument(entityType.isAnnotationPresent(Entity.class));
         Entity entityAnnotation = entityType.getAnnotation(Entity.class);
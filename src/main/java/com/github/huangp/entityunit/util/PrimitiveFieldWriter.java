@@ -0,0 +1,19 @@
+package com.github.huangp.entityunit.util;
+
+/**
+ * Writes primitive values into a primitive field without boxing.
+ * <p>
+ * Implemented by accessors that write fields directly. The field type must match the method.
+ *
+ * @author Patrick Huang
+ * @see Accessors#bind(Class, Settable, boolean)
+ */
+public interface PrimitiveFieldWriter {
+    void setInt(Object ownerInstance, int value);
+
+    void setLong(Object ownerInstance, long value);
+
+    void setDouble(Object ownerInstance, double value);
+
+    void setBoolean(Object ownerInstance, boolean value);
+}
@@ -15,11 +15,13 @@ public class SettableField implements Settable {
     private final Field field;
     private final Method getterMethod;
     private final transient String fullName;
+    private final transient Accessor accessor;
 
     private SettableField(Class ownerType, Field field) {
         this.field = field;
         getterMethod = ClassUtil.getterMethod(ownerType, field.getName());
         fullName = String.format(FULL_NAME_FORMAT, ownerType.getName(), field.getName());
+        accessor = getterMethod != null ? Accessors.ofGetter(getterMethod) : Accessors.ofField(field);
     }
 
     public static Settable from(Class ownerType, Field field) {
@@ -43,10 +45,7 @@ public class SettableField implements Settable {
 
     @Override
     public <T> T valueIn(Object ownerInstance) {
-        if (getterMethod != null) {
-            return ClassUtil.invokeGetter(ownerInstance, getterMethod);
-        }
-        return ClassUtil.getFieldValue(ownerInstance, field);
+        return accessor.get(ownerInstance);
     }
 
     @Override
@@ -2,8 +2,6 @@ package com.github.huangp.entityunit.util;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
-import com.google.common.base.Predicate;
-import com.google.common.collect.Iterables;
 import com.google.common.collect.ObjectArrays;
 
 import java.beans.PropertyDescriptor;
@@ -22,6 +20,7 @@ public class SettableProperty implements Settable {
     private final transient String simpleName;
     private final transient String fullName;
     private final transient Type propertyType;
+    private final transient Accessor accessor;
 
     private SettableProperty(Class ownerType, PropertyDescriptor propertyDescriptor) {
         Preconditions.checkArgument(propertyDescriptor.getReadMethod() != null || propertyDescriptor.getPropertyType() != null,
@@ -29,10 +28,21 @@ public class SettableProperty implements Settable {
         simpleName = propertyDescriptor.getName();
         fullName = String.format(FULL_NAME_FORMAT, ownerType.getName(), simpleName);
 
-        optionalField = findField(ownerType, simpleName);
+        optionalField = ClassMetadata.of(ownerType).findField(simpleName);
 
         getterMethod = propertyDescriptor.getReadMethod();
         propertyType = getGenericType(propertyDescriptor);
+        accessor = createAccessor();
+    }
+
+    private Accessor createAccessor() {
+        if (getterMethod != null) {
+            return Accessors.ofGetter(getterMethod);
+        }
+        if (optionalField.isPresent()) {
+            return Accessors.ofField(optionalField.get());
+        }
+        return null;
     }
 
     private Type getGenericType(PropertyDescriptor propDesc) {
@@ -45,15 +55,6 @@ public class SettableProperty implements Settable {
         return propDesc.getPropertyType();
     }
 
-    private static Optional<Field> findField(Class ownerType, final String fieldName) {
-        return Iterables.tryFind(ClassUtil.getAllDeclaredFields(ownerType), new Predicate<Field>() {
-            @Override
-            public boolean apply(Field input) {
-                return input.getName().equals(fieldName);
-            }
-        });
-    }
-
     public static Settable from(Class ownerType, PropertyDescriptor propertyDescriptor) {
         return new SettableProperty(ownerType, propertyDescriptor);
     }
@@ -75,7 +76,8 @@ public class SettableProperty implements Settable {
 
     @Override
     public <T> T valueIn(Object ownerInstance) {
-        return ClassUtil.invokeGetter(ownerInstance, getterMethod);
+        Preconditions.checkState(accessor != null, "%s has no getter or field", fullName);
+        return accessor.get(ownerInstance);
     }
 
     @Override
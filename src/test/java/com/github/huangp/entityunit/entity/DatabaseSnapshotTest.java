@@ -0,0 +1,96 @@
+package com.github.huangp.entityunit.entity;
+
+import com.github.huangp.entities.Category;
+import com.github.huangp.entities.LineItem;
+import com.github.huangp.entities.Person;
+import org.hamcrest.Matchers;
+import org.hibernate.Session;
+import org.hibernate.jdbc.Work;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.zanata.model.HProject;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Patrick Huang
+ */
+public class DatabaseSnapshotTest {
+    private static EntityManagerFactory emFactory;
+    private EntityManager entityManager;
+
+    @BeforeClass
+    public static void setupEmFactory() {
+        emFactory = Persistence.createEntityManagerFactory("zanataTestDatasourcePU", null);
+    }
+
+    @Before
+    public void setUp() {
+        entityManager = emFactory.createEntityManager();
+        entityManager.getTransaction().begin();
+        EntityCleaner.deleteAll(entityManager, Person.class, Category.class, LineItem.class, HProject.class);
+        entityManager.getTransaction().commit();
+        entityManager.getTransaction().begin();
+    }
+
+    @After
+    public void tearDown() {
+        entityManager.getTransaction().rollback();
+        entityManager.close();
+    }
+
+    @Test
+    public void canRestoreSnapshot() {
+        EntityMaker maker = EntityMakerBuilder.builder().build();
+        LineItem lineItem = maker.makeAndPersist(entityManager, LineItem.class);
+        HProject project = maker.makeAndPersist(entityManager, HProject.class);
+        project.getCustomizedValidations().add("HTML");
+        entityManager.flush();
+
+        final DatabaseSnapshot[] snapshot = new DatabaseSnapshot[1];
+        doWork(new Work() {
+            @Override
+            public void execute(Connection connection) throws SQLException {
+                snapshot[0] = DatabaseSnapshot.take(connection,
+                        LineItem.class, Category.class, Person.class, HProject.class);
+            }
+        });
+        assertThat(snapshot[0].getRowCount("LineItem"), Matchers.equalTo(1));
+        assertThat(snapshot[0].getRowCount("HProject_Validation"), Matchers.equalTo(1));
+
+        entityManager.clear();
+        EntityCleaner.deleteAll(entityManager, Person.class, Category.class, LineItem.class, HProject.class);
+        assertThat(count("select count(*) from LineItem"), Matchers.equalTo(0L));
+
+        doWork(new Work() {
+            @Override
+            public void execute(Connection connection) throws SQLException {
+                snapshot[0].restore(connection);
+            }
+        });
+
+        assertThat(count("select count(*) from LineItem"), Matchers.equalTo(1L));
+        assertThat(count("select count(*) from Category"), Matchers.equalTo(1L));
+        assertThat(count("select count(*) from Person"), Matchers.equalTo(1L));
+        LineItem restored = entityManager.find(LineItem.class, lineItem.getId());
+        assertThat(restored.getContent(), Matchers.equalTo(lineItem.getContent()));
+        HProject restoredProject = entityManager.find(HProject.class, project.getId());
+        assertThat(restoredProject.getCustomizedValidations(), Matchers.contains("HTML"));
+    }
+
+    private void doWork(Work work) {
+        entityManager.unwrap(Session.class).doWork(work);
+    }
+
+    private long count(String query) {
+        return entityManager.createQuery(query, Long.class).getSingleResult();
+    }
+}
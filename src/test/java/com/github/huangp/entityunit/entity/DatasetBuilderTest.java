@@ -0,0 +1,122 @@
+package com.github.huangp.entityunit.entity;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import org.hamcrest.Matchers;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.zanata.model.HAccount;
+import org.zanata.model.HDocument;
+import org.zanata.model.HLocale;
+import org.zanata.model.HPerson;
+import org.zanata.model.HProject;
+import org.zanata.model.HProjectIteration;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Patrick Huang
+ */
+public class DatasetBuilderTest {
+    private static EntityManagerFactory emFactory;
+    private EntityManager entityManager;
+
+    @BeforeClass
+    public static void setupEmFactory() {
+        emFactory = Persistence.createEntityManagerFactory("zanataTestDatasourcePU", null);
+    }
+
+    @Before
+    public void setUp() {
+        entityManager = emFactory.createEntityManager();
+        entityManager.getTransaction().begin();
+        EntityCleaner.deleteAll(entityManager,
+                HAccount.class, HPerson.class, HProject.class, HProjectIteration.class, HLocale.class, HDocument.class);
+        entityManager.getTransaction().commit();
+    }
+
+    @After
+    public void tearDown() {
+        entityManager.close();
+    }
+
+    @Test
+    public void canBuildDatasetInParallel() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        Map<Class<?>, List<Serializable>> ids = DatasetBuilder.builder(emFactory)
+                .add(HProject.class, 3)
+                .add(HProjectIteration.class, 6)
+                .add(HDocument.class, 30)
+                .sliceSize(4)
+                .batchSize(3)
+                .executor(executor)
+                .build();
+        executor.shutdown();
+
+        assertThat(ids.keySet(), Matchers.<Class<?>>contains(HProject.class, HProjectIteration.class, HDocument.class));
+        assertThat(ImmutableSet.copyOf(ids.get(HDocument.class)), Matchers.hasSize(30));
+        assertThat(count("select count(*) from HProject"), Matchers.equalTo(3L));
+        assertThat(count("select count(*) from HProjectIteration"), Matchers.equalTo(6L));
+        assertThat(count("select count(*) from HDocument"), Matchers.equalTo(30L));
+        // shared depending entities are persisted only once
+        assertThat(count("select count(*) from HLocale"), Matchers.equalTo(1L));
+
+        // children are spread over parents
+        List<Long> iterationsPerProject = entityManager.createQuery(
+                "select count(*) from HProjectIteration group by project", Long.class).getResultList();
+        assertThat(iterationsPerProject, Matchers.contains(2L, 2L, 2L));
+        List<Long> documentsPerIteration = entityManager.createQuery(
+                "select count(*) from HDocument group by projectIteration", Long.class).getResultList();
+        assertThat(documentsPerIteration, Matchers.everyItem(Matchers.equalTo(5L)));
+        assertThat(documentsPerIteration, Matchers.hasSize(6));
+    }
+
+    @Test
+    public void seededDatasetIsReproducibleInParallel() {
+        List<String> first = buildSeededDataset();
+        setUp();
+        List<String> second = buildSeededDataset();
+
+        assertThat(first, Matchers.hasSize(30));
+        assertThat(second, Matchers.equalTo(first));
+    }
+
+    private List<String> buildSeededDataset() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        DatasetBuilder.builder(emFactory, EntityMakerBuilder.builder().seed(42L))
+                .add(HProject.class, 3)
+                .add(HProjectIteration.class, 6)
+                .add(HDocument.class, 30)
+                .sliceSize(2)
+                .executor(executor)
+                .build();
+        executor.shutdown();
+
+        List<Object[]> rows = entityManager.createQuery(
+                "select d.projectIteration.project.slug, d.projectIteration.slug, d.docId, d.name, d.path "
+                        + "from HDocument d", Object[].class).getResultList();
+        List<String> documents = Lists.newArrayList();
+        for (Object[] row : rows) {
+            documents.add(Joiner.on('/').useForNull("").join(row));
+        }
+        Collections.sort(documents);
+        return documents;
+    }
+
+    private long count(String query) {
+        return entityManager.createQuery(query, Long.class).getSingleResult();
+    }
+}
@@ -54,4 +54,29 @@ public class EntityClassTest {
 
         assertThat(elements, Matchers.<Settable>iterableWithSize(18));
     }
+
+    @Test
+    public void entityClassIsCachedWithStats() {
+        long hits = MetadataCache.entityClassStats().hitCount();
+
+        EntityClass first = EntityClass.from(HProjectIteration.class);
+        EntityClass second = EntityClass.from(HProjectIteration.class);
+
+        assertThat(second, Matchers.sameInstance(first));
+        assertThat(MetadataCache.entityClassStats().hitCount(), Matchers.greaterThan(hits));
+    }
+
+    @Test
+    public void changingCapacityDropsCachedEntityClasses() {
+        EntityClass.from(HProjectIteration.class);
+        try {
+            MetadataCache.configure(1000);
+
+            assertThat(MetadataCache.entityClassCount(), Matchers.equalTo(0L));
+            EntityClass.from(HProjectIteration.class);
+            assertThat(MetadataCache.entityClassStats().missCount(), Matchers.equalTo(1L));
+        } finally {
+            MetadataCache.configure(MetadataCache.DEFAULT_CAPACITY);
+        }
+    }
 }
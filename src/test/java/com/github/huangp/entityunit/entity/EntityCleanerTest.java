@@ -3,29 +3,165 @@ package com.github.huangp.entityunit.entity;
 import com.github.huangp.entities.Category;
 import com.github.huangp.entities.LineItem;
 import com.github.huangp.entities.Person;
+import com.google.common.collect.Lists;
+import org.hamcrest.Matchers;
+import org.hibernate.Session;
+import org.hibernate.jdbc.Work;
 import org.junit.Before;
-import org.junit.Ignore;
+import org.junit.BeforeClass;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
+import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.zanata.model.HLocale;
+import org.zanata.model.HProject;
 
 import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import javax.persistence.Query;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.when;
 
 /**
  * @author Patrick Huang
  */
 public class EntityCleanerTest {
+    private static EntityManagerFactory emFactory;
     @Mock
     private EntityManager entityManager;
+    @Mock
+    private Query query;
+
+    @BeforeClass
+    public static void setupEmFactory() {
+        emFactory = Persistence.createEntityManagerFactory("zanataTestDatasourcePU", null);
+    }
 
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
+        when(entityManager.createQuery(anyString())).thenReturn(query);
     }
 
     @Test
-    @Ignore("not yet implemented")
     public void canDeleteTableInOrder() {
-        EntityCleaner.deleteAll(entityManager, Category.class, LineItem.class, Person.class);
+        EntityCleaner.deleteAll(entityManager, Person.class, Category.class, LineItem.class);
+
+        InOrder inOrder = Mockito.inOrder(entityManager);
+        inOrder.verify(entityManager).createQuery("delete from LineItem");
+        inOrder.verify(entityManager).createQuery("delete from Category");
+        inOrder.verify(entityManager).createQuery("delete from Person");
+    }
+
+    @Test
+    public void deleteOrderDoesNotDependOnGivenOrder() {
+        EntityCleaner.deleteAll(entityManager, Category.class, Person.class, LineItem.class);
+
+        InOrder inOrder = Mockito.inOrder(entityManager);
+        inOrder.verify(entityManager).createQuery("delete from LineItem");
+        inOrder.verify(entityManager).createQuery("delete from Category");
+        inOrder.verify(entityManager).createQuery("delete from Person");
+    }
+
+    @Test
+    public void canTruncateTablesWithReferences() {
+        EntityManager realEntityManager = emFactory.createEntityManager();
+        realEntityManager.getTransaction().begin();
+        EntityMaker maker = EntityMakerBuilder.builder().build();
+        maker.makeAndPersist(realEntityManager, LineItem.class);
+        HProject project = maker.makeAndPersist(realEntityManager, HProject.class);
+        project.getCustomizedValidations().add("HTML");
+        realEntityManager.flush();
+
+        realEntityManager.unwrap(Session.class).doWork(new Work() {
+            @Override
+            public void execute(Connection connection) throws SQLException {
+                EntityCleaner.truncateAll(connection, Person.class, Category.class, LineItem.class, HProject.class);
+            }
+        });
+
+        for (String table : new String[]{ "LineItem", "Category", "Person", "HProject", "HProject_Validation" }) {
+            Number count = (Number) realEntityManager.createNativeQuery("select count(*) from " + table)
+                    .getSingleResult();
+            assertThat(table, count.longValue(), Matchers.equalTo(0L));
+        }
+        realEntityManager.getTransaction().rollback();
+        realEntityManager.close();
+    }
+
+    @Test
+    public void canKeepLargeExclusionAndAssociationRows() {
+        EntityManager realEntityManager = emFactory.createEntityManager();
+        realEntityManager.getTransaction().begin();
+        EntityCleaner.deleteAll(realEntityManager, Person.class, Category.class, LineItem.class, HProject.class,
+                HLocale.class);
+        List<Object> excluded = Lists.newArrayList();
+        // more than two chunks with deleted rows in between
+        for (int i = 0; i < EntityCleaner.MAX_IN_LIST_SIZE * 2 + 100; i++) {
+            Person person = new Person();
+            realEntityManager.persist(person);
+            excluded.add(person);
+            if (i % 300 == 0) {
+                realEntityManager.persist(new Person());
+            }
+        }
+        realEntityManager.persist(new Person());
+        EntityMaker maker = EntityMakerBuilder.builder().build();
+        HLocale keptLocale = maker.makeAndPersist(realEntityManager, HLocale.class);
+        HProject keptProject = maker.makeAndPersist(realEntityManager, HProject.class);
+        keptProject.getCustomizedValidations().add("HTML");
+        keptProject.getCustomizedLocales().add(keptLocale);
+        HProject project = maker.makeAndPersist(realEntityManager, HProject.class);
+        project.getCustomizedValidations().add("XML");
+        project.getCustomizedLocales().add(keptLocale);
+        excluded.add(keptProject);
+        excluded.add(keptLocale);
+        realEntityManager.flush();
+
+        EntityCleaner.deleteAllExcept(realEntityManager,
+                Lists.<Class>newArrayList(Person.class, HProject.class, HLocale.class), excluded.toArray());
+
+        assertThat(countRows(realEntityManager, "Person"), Matchers.equalTo((long) excluded.size() - 2));
+        assertThat(countRows(realEntityManager, "HProject"), Matchers.equalTo(1L));
+        assertThat(countRows(realEntityManager, "HProject_Validation"), Matchers.equalTo(1L));
+        assertThat(countRows(realEntityManager, "HProject_Locale"), Matchers.equalTo(1L));
+        realEntityManager.getTransaction().rollback();
+        realEntityManager.close();
+    }
+
+    @Test
+    public void noStatementBindsMoreThanOneChunkOfIds() {
+        when(query.setParameter(anyString(), any())).thenReturn(query);
+        List<Object> excluded = Lists.newArrayList();
+        for (long i = 1; i <= EntityCleaner.MAX_IN_LIST_SIZE * 5; i++) {
+            Person person = new Person();
+            IdAllocator.assignId(person, i);
+            excluded.add(person);
+        }
+
+        EntityCleaner.deleteAllExcept(entityManager, Lists.<Class>newArrayList(Person.class), excluded.toArray());
+
+        ArgumentCaptor<Object> excludedIds = ArgumentCaptor.forClass(Object.class);
+        Mockito.verify(query, Mockito.times(5)).setParameter(Mockito.eq("excludedIds"), excludedIds.capture());
+        for (Object ids : excludedIds.getAllValues()) {
+            assertThat((List<?>) ids, Matchers.hasSize(EntityCleaner.MAX_IN_LIST_SIZE));
+        }
+        // one statement per chunk and one for rows after the last excluded id
+        Mockito.verify(query, Mockito.times(6)).executeUpdate();
+    }
+
+    private static long countRows(EntityManager entityManager, String table) {
+        return ((Number) entityManager.createNativeQuery("select count(*) from " + table).getSingleResult())
+                .longValue();
     }
 }
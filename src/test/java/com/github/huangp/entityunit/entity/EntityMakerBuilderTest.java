@@ -8,12 +8,17 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Answers;
 import org.mockito.Mock;
+import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.zanata.common.LocaleId;
 import org.zanata.model.HLocale;
 import org.zanata.model.HTextFlow;
 
 import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.Metamodel;
+import java.util.Collections;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 
@@ -66,4 +71,33 @@ public class EntityMakerBuilderTest {
 
     }
 
+    @Test
+    public void canPrewarmMetadata() {
+        EntityMaker maker = EntityMakerBuilder.builder()
+                .prewarm(HTextFlow.class)
+                .build();
+        long entityClassMisses = MetadataCache.entityClassStats().missCount();
+        long scanMisses = MetadataCache.scanStats().missCount();
+
+        maker.makeAndPersist(em, HTextFlow.class);
+
+        assertThat(MetadataCache.entityClassStats().missCount(), Matchers.equalTo(entityClassMisses));
+        assertThat(MetadataCache.scanStats().missCount(), Matchers.equalTo(scanMisses));
+    }
+
+    @Test
+    public void canPrewarmManagedTypes() {
+        EntityManagerFactory emFactory = Mockito.mock(EntityManagerFactory.class);
+        Metamodel metamodel = Mockito.mock(Metamodel.class);
+        EntityType<?> entityType = Mockito.mock(EntityType.class);
+        Mockito.doReturn(HLocale.class).when(entityType).getJavaType();
+        Mockito.doReturn(Collections.singleton(entityType)).when(metamodel).getEntities();
+        Mockito.doReturn(metamodel).when(emFactory).getMetamodel();
+
+        EntityMakerBuilder.builder().prewarm(emFactory).build();
+        long scanHits = MetadataCache.scanStats().hitCount();
+        new EntityClassScanner().scan(HLocale.class);
+
+        assertThat(MetadataCache.scanStats().hitCount(), Matchers.equalTo(scanHits + 1));
+    }
 }
@@ -7,7 +7,12 @@ import com.github.huangp.entityunit.maker.FixedValueMaker;
 import com.github.huangp.entityunit.maker.IntervalValuesMaker;
 import com.github.huangp.entityunit.maker.RangeValuesMaker;
 import com.github.huangp.entityunit.maker.SkipFieldValueMaker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import lombok.extern.slf4j.Slf4j;
 import org.hamcrest.Matchers;
 import org.junit.After;
@@ -39,8 +44,16 @@ import org.zanata.model.type.EntityType;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
+import java.io.Serializable;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -68,17 +81,16 @@ public class EntityMakerImplTest {
         maker = EntityMakerBuilder.builder().build();
         entityManager = emFactory.createEntityManager();
         entityManager.getTransaction().begin();
-        EntityCleaner.deleteAll(entityManager, Lists.<Class>newArrayList(
+        EntityCleaner.deleteAll(entityManager,
                 // simple test entities
-                LineItem.class, Category.class, Person.class,
+                Person.class, Category.class, LineItem.class,
                 // zanata stuff
-                Activity.class,
-                HGlossaryEntry.class, HGlossaryTerm.class,
-                HTextFlowTarget.class, HTextFlow.class, HDocument.class,
-                HLocaleMember.class, HLocale.class,
-                HProjectIteration.class, HProject.class,
-                HPerson.class, HAccount.class
-        ));
+                HAccount.class, HPerson.class,
+                HProject.class, HProjectIteration.class,
+                HLocale.class, HLocaleMember.class,
+                HDocument.class, HTextFlow.class, HTextFlowTarget.class,
+                HGlossaryTerm.class, HGlossaryEntry.class,
+                Activity.class);
         copyCallback = new TakeCopyCallback();
         entityManager.getTransaction().commit();
     }
@@ -262,6 +274,66 @@ public class EntityMakerImplTest {
         assertThat(result.get(0).getId(), Matchers.equalTo(200L));
     }
 
+    @Test
+    public void sameSeedMakesSameEntities() {
+        entityManager.getTransaction().begin();
+        Category one = EntityMakerBuilder.builder().seed(7L).build().makeAndPersist(entityManager, Category.class);
+        Category two = EntityMakerBuilder.builder().seed(7L).build().makeAndPersist(entityManager, Category.class);
+        entityManager.getTransaction().commit();
+
+        assertThat(two.getName(), Matchers.equalTo(one.getName()));
+        assertThat(two.getId(), Matchers.not(one.getId()));
+    }
+
+    @Test
+    public void canFixManyIds() {
+        entityManager.getTransaction().begin();
+        Map<Object, Serializable> wantedIds = Maps.newLinkedHashMap();
+        for (int i = 0; i < 3; i++) {
+            wantedIds.put(maker.makeAndPersist(entityManager, HProject.class), 300L + i);
+        }
+        // wanted id doesn't have to be the same number type as the id
+        wantedIds.put(maker.makeAndPersist(entityManager, HAccount.class), 400);
+
+        List<Object> fixed = FixIdCallback.fixIds(entityManager, wantedIds);
+        entityManager.getTransaction().commit();
+
+        assertThat(fixed, Matchers.hasSize(4));
+        assertThat(((HProject) fixed.get(0)).getId(), Matchers.equalTo(300L));
+        assertThat(((HProject) fixed.get(2)).getId(), Matchers.equalTo(302L));
+        assertThat(((HAccount) fixed.get(3)).getId(), Matchers.equalTo(400L));
+        assertThat(entityManager.contains(fixed.get(1)), Matchers.is(true));
+        List<Long> projectIds = entityManager.createQuery("select p.id from HProject p order by p.id", Long.class)
+                .getResultList();
+        assertThat(projectIds, Matchers.contains(300L, 301L, 302L));
+    }
+
+    @Test
+    public void fixIdsWillCheckAllEntitiesFirst() {
+        HAccountRole role = new HAccountRole();
+        role.setRoleType(HAccountRole.RoleType.MANUAL);
+        role.setName("admin");
+        entityManager.getTransaction().begin();
+        entityManager.persist(role);
+        HProject project = maker.makeAndPersist(entityManager, HProject.class);
+        Long generatedId = project.getId();
+        HAccount account = maker.makeAndPersist(entityManager, HAccount.class);
+        account.getRoles().add(role);
+        Map<Object, Serializable> wantedIds = Maps.newLinkedHashMap();
+        wantedIds.put(project, 500L);
+        wantedIds.put(account, 501L);
+
+        try {
+            FixIdCallback.fixIds(entityManager, wantedIds);
+            Assert.fail("should fail");
+        } catch (IllegalStateException e) {
+            assertThat(project.getId(), Matchers.equalTo(generatedId));
+            assertThat(entityManager.find(HProject.class, 500L), Matchers.nullValue());
+        } finally {
+            entityManager.getTransaction().rollback();
+        }
+    }
+
     @Test
     public void fixIdShouldOnlyWorkWithNoAssociation() {
         HAccountRole role = new HAccountRole();
@@ -424,6 +496,178 @@ public class EntityMakerImplTest {
         assertThat(result.getProjectIteration().getProject().getName(), Matchers.equalTo("about fedora"));
     }
 
+    @Test
+    public void canMakeAndPersistManyInBatches() {
+        entityManager.getTransaction().begin();
+        List<Serializable> ids = maker.makeAndPersistMany(entityManager, LineItem.class, 25, 10);
+        entityManager.getTransaction().commit();
+
+        assertThat(ids, Matchers.hasSize(25));
+        assertThat(ImmutableSet.copyOf(ids), Matchers.hasSize(25));
+        assertThat(entityManager.contains(entityManager.find(LineItem.class, ids.get(0))), Matchers.is(true));
+
+        Long numOfItems = entityManager.createQuery("select count(*) from LineItem", Long.class).getSingleResult();
+        Long numOfCategories = entityManager.createQuery("select count(*) from Category", Long.class).getSingleResult();
+        assertThat(numOfItems, Matchers.equalTo(25L));
+        assertThat(numOfCategories, Matchers.equalTo(1L));
+
+        entityManager.clear();
+        Category category = entityManager.createQuery("from Category", Category.class).getSingleResult();
+        assertThat(category.getLineItems(), Matchers.hasSize(25));
+    }
+
+    @Test
+    public void makeAndPersistManyCanCascadeToReusedEntities() {
+        entityManager.getTransaction().begin();
+        List<Serializable> ids = maker.makeAndPersistMany(entityManager, HDocument.class, 7, 3);
+        entityManager.getTransaction().commit();
+
+        assertThat(ids, Matchers.hasSize(7));
+        Long numOfIteration = entityManager.createQuery("select count(*) from HProjectIteration", Long.class).getSingleResult();
+        Long numOfDocument = entityManager.createQuery("select count(*) from HDocument", Long.class).getSingleResult();
+        assertThat(numOfIteration, Matchers.equalTo(1L));
+        assertThat(numOfDocument, Matchers.equalTo(7L));
+    }
+
+    @Test
+    public void canStreamEntitiesWithSharedParents() {
+        List<LineItem> lineItems = ImmutableList.copyOf(Iterators.limit(maker.stream(LineItem.class), 20));
+
+        assertThat(lineItems, Matchers.hasSize(20));
+        assertThat(ImmutableSet.copyOf(lineItems), Matchers.hasSize(20));
+        Category category = lineItems.get(0).getCategory();
+        for (LineItem lineItem : lineItems) {
+            assertThat(lineItem.getCategory(), Matchers.sameInstance(category));
+            assertThat(lineItem.getOwner(), Matchers.notNullValue());
+        }
+        // one side is not populated so shared parents don't keep growing
+        assertThat(category.getLineItems(), Matchers.empty());
+    }
+
+    @Test
+    public void canShareMakerBetweenThreads() throws Exception {
+        final int threads = 8;
+        final int perThread = 100;
+        String[] names = new String[threads * perThread - 1];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "person " + (i + 1);
+        }
+        final EntityMaker sharedMaker = EntityMakerBuilder.builder()
+                .addFieldOrPropertyMaker(Person.class, "name", RangeValuesMaker.errorOnEnd("person 0", names))
+                .addFieldOrPropertyMaker(LineItem.class, "content", IntervalValuesMaker.startFrom("line item content ", 1))
+                .build();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<LineItem>>> futures = Lists.newArrayList();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(new Callable<List<LineItem>>() {
+                @Override
+                public List<LineItem> call() throws Exception {
+                    start.await();
+                    return ImmutableList.copyOf(Iterators.limit(sharedMaker.stream(LineItem.class), perThread));
+                }
+            }));
+        }
+        start.countDown();
+        Set<String> ownerNames = Sets.newHashSet();
+        Set<String> contents = Sets.newHashSet();
+        for (Future<List<LineItem>> future : futures) {
+            for (LineItem lineItem : future.get(30, TimeUnit.SECONDS)) {
+                assertThat(lineItem.getCategory(), Matchers.notNullValue());
+                ownerNames.add(lineItem.getOwner().getName());
+                contents.add(lineItem.getContent());
+            }
+        }
+        executor.shutdown();
+
+        // no value is lost or handed out twice
+        assertThat(ownerNames, Matchers.hasSize(threads * perThread));
+        assertThat(ownerNames, Matchers.hasItems(names));
+        assertThat(contents, Matchers.hasSize(threads * perThread));
+    }
+
+    @Test
+    public void canRollbackOnlyJournaledRows() {
+        entityManager.getTransaction().begin();
+        Person seed = new Person();
+        entityManager.persist(seed);
+        HProject seedProject = maker.makeAndPersist(entityManager, HProject.class);
+
+        EntityMaker journalMaker = EntityMakerBuilder.builder()
+                .includeOptionalOneToOne()
+                .reuseEntity(seedProject)
+                .journal(new WriteJournal())
+                .build();
+        journalMaker.makeAndPersist(entityManager, LineItem.class);
+        journalMaker.makeAndPersistMany(entityManager, LineItem.class, 2);
+        HLocale locale = journalMaker.makeAndPersist(entityManager, HLocale.class);
+        seedProject = entityManager.find(HProject.class, seedProject.getId());
+        seedProject.getCustomizedLocales().add(locale);
+        HProjectIteration iteration = journalMaker.makeAndPersist(entityManager, HProjectIteration.class);
+        iteration.getCustomizedLocales().add(locale);
+        entityManager.flush();
+        entityManager.clear();
+
+        journalMaker.rollbackJournal(entityManager);
+
+        assertThat(count("select count(*) from LineItem"), Matchers.equalTo(0L));
+        assertThat(count("select count(*) from Category"), Matchers.equalTo(0L));
+        assertThat(count("select count(*) from HLocale"), Matchers.equalTo(0L));
+        assertThat(count("select count(*) from HProjectIteration"), Matchers.equalTo(0L));
+        // seed data is untouched
+        assertThat(count("select count(*) from Person"), Matchers.equalTo(1L));
+        assertThat(count("select count(*) from HProject"), Matchers.equalTo(1L));
+
+        // deleted entities are not reused
+        LineItem lineItem = journalMaker.makeAndPersist(entityManager, LineItem.class);
+        assertThat(count("select count(*) from Category"), Matchers.equalTo(1L));
+        assertThat(lineItem.getCategory().getId(), Matchers.notNullValue());
+        entityManager.getTransaction().rollback();
+    }
+
+    @Test
+    public void canRollbackInverseSideOfSeedAssociation() {
+        entityManager.getTransaction().begin();
+        HAccount seedAccount = maker.makeAndPersist(entityManager, HAccount.class);
+        HAccountRole role = new HAccountRole();
+        role.setRoleType(HAccountRole.RoleType.MANUAL);
+        role.setName("journaled");
+        entityManager.persist(role);
+        WriteJournal journal = new WriteJournal();
+        journal.record(role);
+        seedAccount.getRoles().add(role);
+        entityManager.flush();
+        entityManager.clear();
+
+        journal.rollback(entityManager);
+
+        assertThat(count("select count(*) from HAccountRole r where r.name = 'journaled'"), Matchers.equalTo(0L));
+        assertThat(count("select count(*) from HAccount"), Matchers.equalTo(1L));
+        assertThat(entityManager.find(HAccount.class, seedAccount.getId()).getRoles(), Matchers.empty());
+        entityManager.getTransaction().rollback();
+    }
+
+    @Test
+    public void canRollbackFixedIdEntities() {
+        entityManager.getTransaction().begin();
+        EntityMaker journalMaker = EntityMakerBuilder.builder().journal(new WriteJournal()).build();
+        HAccount account = journalMaker.makeAndPersist(entityManager, HAccount.class,
+                new FixIdCallback(HAccount.class, 300L));
+        assertThat(account.getId(), Matchers.equalTo(300L));
+        entityManager.flush();
+        entityManager.clear();
+
+        journalMaker.rollbackJournal(entityManager);
+
+        assertThat(count("select count(*) from HAccount"), Matchers.equalTo(0L));
+        entityManager.getTransaction().rollback();
+    }
+
+    private long count(String query) {
+        return entityManager.createQuery(query, Long.class).getSingleResult();
+    }
+
     @Test
     // to test wiki page is right
     public void wikiContentPageTest() {
@@ -0,0 +1,96 @@
+package com.github.huangp.entityunit.entity;
+
+import com.github.huangp.entities.Category;
+import com.github.huangp.entities.Ticket;
+import com.google.common.collect.ImmutableSet;
+import org.hamcrest.Matchers;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Patrick Huang
+ */
+public class IdAllocatorTest {
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private Connection connection;
+
+    @Before
+    public void setUp() throws SQLException {
+        MockitoAnnotations.initMocks(this);
+        when(connection.getMetaData().getDatabaseProductName()).thenReturn("H2");
+    }
+
+    @Test
+    public void canAllocateInBlocks() throws SQLException {
+        when(connection.createStatement().executeQuery(anyString()).getLong(1)).thenReturn(10L, 11L);
+        IdAllocator allocator = new IdAllocator(2);
+
+        assertThat(allocator.allocate(connection, Category.class), Matchers.<Serializable>equalTo(11L));
+        assertThat(allocator.allocate(connection, Category.class), Matchers.<Serializable>equalTo(12L));
+        // next block never goes back below what's handed out
+        assertThat(allocator.allocate(connection, Category.class), Matchers.<Serializable>equalTo(13L));
+        assertThat(allocator.allocate(connection, Category.class), Matchers.<Serializable>equalTo(14L));
+
+        verify(connection.createStatement(), times(2)).executeQuery("select max(id) from Category");
+    }
+
+    @Test
+    public void canAllocateIdForEmptyTable() throws SQLException {
+        when(connection.createStatement().executeQuery(anyString()).getLong(1)).thenReturn(0L);
+
+        Serializable id = new IdAllocator().allocate(connection, Category.class);
+
+        assertThat(id, Matchers.<Serializable>equalTo(1L));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void sequenceIdNeedsEntityManager() {
+        new IdAllocator().allocate(connection, Ticket.class);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void autoIdNeedsEntityManagerWhenNativeGeneratorIsSequence() throws SQLException {
+        when(connection.getMetaData().getDatabaseProductName()).thenReturn("PostgreSQL");
+
+        new IdAllocator().allocate(connection, Category.class);
+    }
+
+    @Test
+    public void sequenceIdComesFromHibernateGenerator() {
+        EntityManagerFactory emFactory = Persistence.createEntityManagerFactory("zanataTestDatasourcePU", null);
+        EntityManager entityManager = emFactory.createEntityManager();
+        try {
+            entityManager.getTransaction().begin();
+            IdAllocator allocator = new IdAllocator(entityManager);
+
+            Serializable first = allocator.allocate(connection, Ticket.class);
+            Ticket ticket = new Ticket();
+            entityManager.persist(ticket);
+            Serializable second = allocator.allocate(connection, Ticket.class);
+
+            // the generator is shared with hibernate so none of them clash
+            assertThat(ImmutableSet.of(first, ticket.getId(), second), Matchers.hasSize(3));
+            entityManager.getTransaction().rollback();
+        } finally {
+            entityManager.close();
+            emFactory.close();
+        }
+    }
+
+}
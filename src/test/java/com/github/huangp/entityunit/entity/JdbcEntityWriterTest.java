@@ -0,0 +1,139 @@
+package com.github.huangp.entityunit.entity;
+
+import com.github.huangp.entities.Category;
+import com.github.huangp.entities.LineItem;
+import com.github.huangp.entities.Person;
+import com.google.common.collect.Lists;
+import org.hamcrest.Matchers;
+import org.hibernate.Session;
+import org.hibernate.jdbc.Work;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.zanata.model.HLocale;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Patrick Huang
+ */
+public class JdbcEntityWriterTest {
+    private static EntityManagerFactory emFactory;
+    private EntityManager entityManager;
+
+    @BeforeClass
+    public static void setupEmFactory() {
+        emFactory = Persistence.createEntityManagerFactory("zanataTestDatasourcePU", null);
+    }
+
+    @Before
+    public void setUp() {
+        entityManager = emFactory.createEntityManager();
+        entityManager.getTransaction().begin();
+        EntityCleaner.deleteAll(entityManager, Lists.<Class>newArrayList(LineItem.class, Category.class, Person.class));
+        entityManager.getTransaction().commit();
+        entityManager.getTransaction().begin();
+    }
+
+    @After
+    public void tearDown() {
+        entityManager.getTransaction().rollback();
+        entityManager.close();
+    }
+
+    @Test
+    public void canInsertManyWithForeignKeys() {
+        final EntityMaker maker = EntityMakerBuilder.builder().includeOptionalOneToOne().build();
+        final List<Serializable> ids = Lists.newArrayList();
+
+        doWork(new Work() {
+            @Override
+            public void execute(Connection connection) throws SQLException {
+                ids.addAll(maker.makeAndInsertMany(new JdbcEntityWriter(connection, 7), Category.class, 30));
+            }
+        });
+
+        assertThat(ids, Matchers.hasSize(30));
+        assertThat(count("select count(*) from Category"), Matchers.equalTo(30L));
+        // optional OneToOne is made new each time
+        assertThat(count("select count(*) from Person"), Matchers.equalTo(30L));
+        assertThat(count("select count(distinct c.categoryOwner) from Category c"), Matchers.equalTo(30L));
+
+        Category category = entityManager.find(Category.class, ids.get(29));
+        assertThat(category.getName().length(), Matchers.greaterThanOrEqualTo(5));
+        assertThat(category.getCategoryOwner(), Matchers.notNullValue());
+    }
+
+    @Test
+    public void idsAreAssignedAfterExistingRows() {
+        Person existing = new Person();
+        entityManager.persist(existing);
+        entityManager.flush();
+        final Person person = new Person();
+
+        doWork(new Work() {
+            @Override
+            public void execute(Connection connection) throws SQLException {
+                JdbcEntityWriter writer = new JdbcEntityWriter(connection);
+                writer.write(person);
+                writer.close();
+            }
+        });
+
+        assertThat(person.getId(), Matchers.equalTo(existing.getId() + 1));
+        assertThat(count("select count(*) from Person"), Matchers.equalTo(2L));
+    }
+
+    @Test
+    public void writersSharingAllocatorWillNotClash() {
+        final IdAllocator idAllocator = new IdAllocator(3);
+        final List<Serializable> ids = Lists.newArrayList();
+
+        doWork(new Work() {
+            @Override
+            public void execute(Connection connection) throws SQLException {
+                JdbcEntityWriter one = new JdbcEntityWriter(connection, 10, idAllocator);
+                JdbcEntityWriter two = new JdbcEntityWriter(connection, 10, idAllocator);
+                for (int i = 0; i < 4; i++) {
+                    ids.add(one.write(new Person()));
+                    ids.add(two.write(new Person()));
+                }
+                one.close();
+                two.close();
+            }
+        });
+
+        Long firstId = (Long) ids.get(0);
+        for (int i = 0; i < ids.size(); i++) {
+            assertThat(ids.get(i), Matchers.<Serializable>equalTo(firstId + i));
+        }
+        assertThat(count("select count(*) from Person"), Matchers.equalTo(8L));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void willRejectCustomHibernateType() {
+        doWork(new Work() {
+            @Override
+            public void execute(Connection connection) throws SQLException {
+                new JdbcEntityWriter(connection).write(new HLocale());
+            }
+        });
+    }
+
+    private void doWork(Work work) {
+        entityManager.unwrap(Session.class).doWork(work);
+    }
+
+    private long count(String query) {
+        return entityManager.createQuery(query, Long.class).getSingleResult();
+    }
+}
@@ -0,0 +1,120 @@
+package com.github.huangp.entityunit.entity;
+
+import com.github.huangp.entityunit.util.Settable;
+import com.google.common.base.Function;
+import com.google.common.collect.Lists;
+import org.hamcrest.Matchers;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.zanata.model.HAccount;
+import org.zanata.model.HDocument;
+import org.zanata.model.HLocale;
+import org.zanata.model.HPerson;
+import org.zanata.model.HProject;
+import org.zanata.model.HProjectIteration;
+import org.zanata.model.HTextFlow;
+import org.zanata.model.HTextFlowTarget;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Patrick Huang
+ */
+public class MetamodelEntityClassProviderTest {
+    private static EntityManagerFactory emFactory;
+
+    @BeforeClass
+    public static void setUpEmFactory() {
+        emFactory = Persistence.createEntityManagerFactory("zanataTestDatasourcePU", null);
+    }
+
+    @AfterClass
+    public static void cleanUp() {
+        emFactory.close();
+    }
+
+    private static List<Class> types(Iterable<EntityClass> entityClasses) {
+        return Lists.transform(Lists.newArrayList(entityClasses), new Function<EntityClass, Class>() {
+            @Override
+            public Class apply(EntityClass input) {
+                return input.getType();
+            }
+        });
+    }
+
+    @Test
+    public void scanResultIsSameAsReflection() {
+        EntityClassScanner scanner = new EntityClassScanner(ScanOption.IgnoreOptionalOneToOne,
+                new MetamodelEntityClassProvider(emFactory.getMetamodel()));
+
+        assertThat(types(scanner.scan(HTextFlowTarget.class)), Matchers.<Class>contains(
+                HPerson.class,
+                HLocale.class,
+                HProject.class,
+                HProjectIteration.class,
+                HDocument.class,
+                HTextFlow.class));
+    }
+
+    @Test
+    public void canScanOptionalOneToOne() {
+        EntityClassScanner scanner = new EntityClassScanner(ScanOption.IncludeOneToOne,
+                new MetamodelEntityClassProvider(emFactory.getMetamodel()));
+
+        assertThat(types(scanner.scan(HPerson.class)), Matchers.<Class>contains(HAccount.class));
+    }
+
+    @Test
+    public void canGetAssociationsFromMetamodel() {
+        MetamodelEntityClassProvider provider = new MetamodelEntityClassProvider(emFactory.getMetamodel());
+        EntityClass fromMetamodel = provider.get(HProjectIteration.class, ScanOption.IgnoreOptionalOneToOne);
+        EntityClass fromReflection = EntityClass.from(HProjectIteration.class);
+
+        assertThat(fromMetamodel, Matchers.not(Matchers.sameInstance(fromReflection)));
+        assertThat(types(fromMetamodel.getDependingEntityTypes()),
+                Matchers.equalTo(types(fromReflection.getDependingEntityTypes())));
+        assertThat(fromMetamodel.getContainingEntitiesElements(), Matchers.<Settable>iterableWithSize(3));
+    }
+
+    @Test
+    public void canMakeEntityUsingMetamodel() {
+        EntityManager em = emFactory.createEntityManager();
+        em.getTransaction().begin();
+        try {
+            EntityMaker maker = EntityMakerBuilder.builder().useMetamodel(emFactory).build();
+
+            HTextFlowTarget target = maker.makeAndPersist(em, HTextFlowTarget.class);
+
+            assertThat(target.getId(), Matchers.notNullValue());
+            assertThat(target.getTextFlow().getDocument().getProjectIteration().getProject().getId(),
+                    Matchers.notNullValue());
+        } finally {
+            em.getTransaction().rollback();
+            em.close();
+        }
+    }
+
+    @Test
+    public void providerCacheIsCoveredByMetadataCache() {
+        MetamodelEntityClassProvider provider = new MetamodelEntityClassProvider(emFactory.getMetamodel());
+        try {
+            MetadataCache.configure(1000);
+
+            provider.get(HLocale.class, ScanOption.IgnoreOptionalOneToOne);
+            provider.get(HLocale.class, ScanOption.IgnoreOptionalOneToOne);
+            assertThat(MetadataCache.entityClassStats().hitCount(), Matchers.equalTo(1L));
+            assertThat(MetadataCache.entityClassCount(), Matchers.equalTo(1L));
+
+            MetadataCache.configure(1000);
+            assertThat(MetadataCache.entityClassCount(), Matchers.equalTo(0L));
+        } finally {
+            MetadataCache.configure(MetadataCache.DEFAULT_CAPACITY);
+        }
+    }
+}
@@ -34,10 +34,12 @@ public class BeanMakerTest {
 
     private MakeContext context;
 
+    private PreferredValueMakersRegistry registry;
+
     @Before
     public void setUp() {
         BeanValueHolder holder = new BeanValueHolder();
-        PreferredValueMakersRegistry registry = new PreferredValueMakersRegistry();
+        registry = new PreferredValueMakersRegistry();
         context = new MakeContext(holder, registry);
     }
 
@@ -151,6 +153,47 @@ public class BeanMakerTest {
         assertThat(testEntity.email, Matchers.endsWith("@nowhere.org"));
     }
 
+    @Test
+    public void makePlanIsCompiledOnceAndReused() {
+        BeanMaker<HProject> maker = new BeanMaker<HProject>(HProject.class, context);
+
+        HProject one = maker.value();
+        BeanMakePlan<HProject> plan = context.getBeanMakePlan(HProject.class);
+        HProject two = new BeanMaker<HProject>(HProject.class, context).value();
+
+        assertThat(context.getBeanMakePlan(HProject.class), Matchers.sameInstance(plan));
+        assertThat(two, Matchers.not(Matchers.sameInstance(one)));
+        assertThat(two.getSlug(), Matchers.notNullValue());
+        assertThat(two.getSlug(), Matchers.not(Matchers.equalTo(one.getSlug())));
+    }
+
+    @Test
+    public void canSetPrimitiveFieldsFromPrimitiveMakers() {
+        registry.addFieldOrPropertyMaker(PrimitiveEntity.class, "rank", IntervalValuesMaker.intsFrom(5, 2));
+        registry.addFieldOrPropertyMaker(PrimitiveEntity.class, "score", IntervalValuesMaker.longsFrom(100L, -1));
+        BeanMaker<PrimitiveEntity> maker = new BeanMaker<PrimitiveEntity>(PrimitiveEntity.class, context);
+
+        maker.value();
+        PrimitiveEntity entity = maker.value();
+
+        assertThat(entity.rank, Matchers.equalTo(7));
+        assertThat(entity.score, Matchers.equalTo(99L));
+        // primitive default for the rest
+        assertThat(entity.ratio, Matchers.equalTo(0D));
+        assertThat(entity.active, Matchers.is(false));
+    }
+
+    @Entity
+    @Data
+    private static class PrimitiveEntity {
+        @Id
+        private Long id;
+        private int rank;
+        private long score;
+        private double ratio = 1D;
+        private boolean active = true;
+    }
+
     @Entity
     @NoArgsConstructor
     @Data
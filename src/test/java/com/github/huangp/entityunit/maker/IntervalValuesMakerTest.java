@@ -1,9 +1,14 @@
 package com.github.huangp.entityunit.maker;
 
+import com.google.common.collect.Lists;
 import org.hamcrest.Matchers;
 import org.junit.Test;
 
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 
@@ -29,6 +34,41 @@ public class IntervalValuesMakerTest {
         assertThat(maker.value(), Matchers.equalTo(5L));
     }
 
+    @Test
+    public void canGetPrimitiveIntervalValues() {
+        IntMaker intMaker = IntervalValuesMaker.intsFrom(Integer.MAX_VALUE, 1);
+        LongMaker longMaker = IntervalValuesMaker.longsFrom(10L, -5);
+
+        assertThat(intMaker.intValue(), Matchers.equalTo(Integer.MAX_VALUE));
+        // overflows like int
+        assertThat(intMaker.intValue(), Matchers.equalTo(Integer.MIN_VALUE));
+        assertThat(longMaker.longValue(), Matchers.equalTo(10L));
+        assertThat(longMaker.value(), Matchers.equalTo(5L));
+    }
+
+    @Test
+    public void intervalValuesAreNotLostAcrossThreads() throws Exception {
+        final LongMaker maker = IntervalValuesMaker.longsFrom(0L, 1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = Lists.newArrayList();
+        for (int i = 0; i < 4; i++) {
+            futures.add(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 1000; j++) {
+                        maker.longValue();
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertThat(maker.longValue(), Matchers.equalTo(4000L));
+    }
+
     @Test
     public void canGetIntervalDate() {
         Date start = new Date();
@@ -0,0 +1,110 @@
+package com.github.huangp.entityunit.maker;
+
+import com.github.huangp.entityunit.util.Settable;
+import com.github.huangp.entityunit.util.SettableField;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import javax.persistence.Column;
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Digits;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import java.math.BigDecimal;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Patrick Huang
+ */
+public class NumericRangeTest {
+
+    private static NumericRange rangeOf(String fieldName, Class<?> type) throws NoSuchFieldException {
+        Settable settable = SettableField.from(Constrained.class, Constrained.class.getDeclaredField(fieldName));
+        return NumericRange.of(settable, type);
+    }
+
+    @Test
+    public void withoutConstraintStartsFromOne() throws Exception {
+        NumericRange range = rangeOf("plain", Integer.class);
+
+        assertThat(range.isWholeNumber(), Matchers.is(true));
+        assertThat(range.longValueAt(1), Matchers.equalTo(1L));
+        assertThat(range.longValueAt(2), Matchers.equalTo(2L));
+    }
+
+    @Test
+    public void wrapsWithinMinAndMax() throws Exception {
+        NumericRange range = rangeOf("percentage", Integer.class);
+
+        assertThat(range.longValueAt(1), Matchers.equalTo(10L));
+        assertThat(range.longValueAt(91), Matchers.equalTo(100L));
+        assertThat(range.longValueAt(92), Matchers.equalTo(10L));
+    }
+
+    @Test
+    public void canHonorNegativeMax() throws Exception {
+        NumericRange range = rangeOf("negative", Long.class);
+
+        assertThat(range.longValueAt(1), Matchers.lessThanOrEqualTo(-5L));
+    }
+
+    @Test
+    public void usesFractionWhenNoWholeNumberFits() throws Exception {
+        NumericRange range = rangeOf("ratio", Double.class);
+
+        BigDecimal value = range.valueAt(1);
+        assertThat(range.isWholeNumber(), Matchers.is(false));
+        assertThat(value, Matchers.greaterThanOrEqualTo(new BigDecimal("0.1")));
+        assertThat(value, Matchers.lessThanOrEqualTo(new BigDecimal("0.5")));
+    }
+
+    @Test
+    public void canHonorDigitsAndColumnPrecision() throws Exception {
+        NumericRange digits = rangeOf("price", BigDecimal.class);
+        NumericRange column = rangeOf("amount", BigDecimal.class);
+
+        assertThat(digits.valueAt(999), Matchers.equalTo(new BigDecimal("999")));
+        assertThat(digits.valueAt(1000), Matchers.equalTo(BigDecimal.ONE));
+        assertThat(column.valueAt(99), Matchers.equalTo(new BigDecimal("99")));
+        assertThat(column.valueAt(100), Matchers.equalTo(BigDecimal.ONE));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void willFailIfNoValueIsValid() throws Exception {
+        rangeOf("impossible", Integer.class);
+    }
+
+    @Test
+    public void stringWithNumericConstraintIsNumber() throws Exception {
+        Settable settable = SettableField.from(Constrained.class, Constrained.class.getDeclaredField("code"));
+        StringMaker maker = StringMaker.from(settable);
+
+        assertThat(maker.value(), Matchers.equalTo("100"));
+        assertThat(maker.value(), Matchers.equalTo("101"));
+    }
+
+    @SuppressWarnings("unused")
+    static class Constrained {
+        private Integer plain;
+        @Min(10)
+        @Max(100)
+        private Integer percentage;
+        @Max(-5)
+        private Long negative;
+        @DecimalMin("0.1")
+        @DecimalMax("0.5")
+        private Double ratio;
+        @Digits(integer = 3, fraction = 2)
+        private BigDecimal price;
+        @Column(precision = 4, scale = 2)
+        private BigDecimal amount;
+        @Min(10)
+        @Max(5)
+        private Integer impossible;
+        @Min(100)
+        @Max(999)
+        private String code;
+    }
+}
@@ -0,0 +1,75 @@
+package com.github.huangp.entityunit.maker;
+
+import com.google.common.collect.Lists;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Patrick Huang
+ */
+public class RandomValueSourceTest {
+
+    @Test
+    public void sameSeedMakesSameValues() {
+        RandomValueSource one = RandomValueSource.seeded(42L);
+        RandomValueSource two = RandomValueSource.seeded(42L);
+
+        assertThat(one.nextAlphabetic(20), Matchers.equalTo(two.nextAlphabetic(20)));
+        assertThat(one.nextInt(1000), Matchers.equalTo(two.nextInt(1000)));
+        assertThat(one.now(), Matchers.equalTo(two.now()));
+        assertThat(RandomValueSource.seeded(43L).nextAlphabetic(20), Matchers.not(one.nextAlphabetic(20)));
+    }
+
+    @Test
+    public void eachThreadHasItsOwnStream() throws Exception {
+        List<String> values = valuesFromTwoThreads(42L);
+
+        assertThat(values.get(1), Matchers.not(values.get(0)));
+        // only the values of a single thread are reproducible
+        assertThat(RandomValueSource.seeded(42L).nextAlphabetic(20), Matchers.equalTo(values.get(0)));
+    }
+
+    @Test
+    public void derivedSourceIsReproducibleInAnyThread() throws Exception {
+        final RandomValueSource derived = RandomValueSource.seeded(42L).derive(3);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            String inOtherThread = executor.submit(new Callable<String>() {
+                @Override
+                public String call() {
+                    return derived.nextAlphabetic(20);
+                }
+            }).get();
+
+            assertThat(RandomValueSource.seeded(42L).derive(3).nextAlphabetic(20), Matchers.equalTo(inOtherThread));
+            assertThat(RandomValueSource.seeded(42L).derive(4).nextAlphabetic(20),
+                    Matchers.not(inOtherThread));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static List<String> valuesFromTwoThreads(long seed) throws Exception {
+        final RandomValueSource source = RandomValueSource.seeded(seed);
+        String inThisThread = source.nextAlphabetic(20);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            String inOtherThread = executor.submit(new Callable<String>() {
+                @Override
+                public String call() {
+                    return source.nextAlphabetic(20);
+                }
+            }).get();
+            return Lists.newArrayList(inThisThread, inOtherThread);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
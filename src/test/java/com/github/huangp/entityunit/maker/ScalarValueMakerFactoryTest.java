@@ -21,6 +21,8 @@ import java.beans.IntrospectionException;
 import java.beans.PropertyDescriptor;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -52,6 +54,19 @@ public class ScalarValueMakerFactoryTest {
         assertThat(factory.from(new FakeSettable(Short.class)), Matchers.instanceOf(NumberMaker.class));
     }
 
+    @Test
+    public void numberMakerUsesSequenceOfEachSettableInItsType() {
+        Maker longMaker = factory.from(new FakeSettable(Long.class));
+        Maker bigDecimalMaker = factory.from(new FakeSettable(BigDecimal.class));
+
+        assertThat(longMaker.value(), Matchers.<Object>equalTo(1L));
+        assertThat(longMaker.value(), Matchers.<Object>equalTo(2L));
+        assertThat(bigDecimalMaker.value(), Matchers.<Object>equalTo(BigDecimal.valueOf(1)));
+        assertThat(factory.from(new FakeSettable(BigInteger.class)).value(), Matchers.<Object>equalTo(BigInteger.ONE));
+        // same settable shares the sequence
+        assertThat(factory.from(new FakeSettable(Long.class)).value(), Matchers.<Object>equalTo(3L));
+    }
+
     @Test
     public void canGetBeanMaker() {
         assertThat(factory.from(new FakeSettable(StatusCount.class)), Matchers.instanceOf(BeanMaker.class));
@@ -114,6 +129,19 @@ public class ScalarValueMakerFactoryTest {
         assertThat(activeMaker.value(), Matchers.is(false));
     }
 
+    @Test
+    public void exactMakerTakesPrecedenceOverMatcher() throws Exception {
+        Settable name = SettableProperty.from(Person.class, new PropertyDescriptor("name", Person.class));
+        registry.add(Matchers.containsString("name"), FixedValueMaker.fix("matcher"));
+
+        assertThat(factory.from(name).value(), Matchers.<Object>equalTo("matcher"));
+
+        // registering again invalidates resolved makers
+        registry.addFieldOrPropertyMaker(Person.class, "name", FixedValueMaker.fix("exact"));
+
+        assertThat(factory.from(name).value(), Matchers.<Object>equalTo("exact"));
+    }
+
     @RequiredArgsConstructor
     private static class TestClass {
         private final String name;
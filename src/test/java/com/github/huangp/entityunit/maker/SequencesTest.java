@@ -0,0 +1,93 @@
+package com.github.huangp.entityunit.maker;
+
+import com.github.huangp.entities.Person;
+import com.github.huangp.entityunit.util.Settable;
+import com.github.huangp.entityunit.util.SettableProperty;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.hamcrest.Matchers;
+import org.junit.Before;
+import org.junit.Test;
+import org.zanata.model.HAccount;
+
+import java.beans.PropertyDescriptor;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Patrick Huang
+ */
+public class SequencesTest {
+    private Sequences sequences;
+    private Settable personName;
+
+    @Before
+    public void setUp() throws Exception {
+        sequences = new Sequences();
+        personName = SettableProperty.from(Person.class, new PropertyDescriptor("name", Person.class));
+    }
+
+    @Test
+    public void eachSettableHasItsOwnSequence() throws Exception {
+        Settable apiKey = SettableProperty.from(HAccount.class, new PropertyDescriptor("apiKey", HAccount.class));
+
+        long first = sequences.of(personName).next();
+
+        assertThat(sequences.of(personName).next(), Matchers.equalTo(first + 1));
+        assertThat(sequences.of(apiKey), Matchers.not(Matchers.sameInstance(sequences.of(personName))));
+    }
+
+    @Test
+    public void newMakerCarriesOnAfterNumbersOfOtherMakers() {
+        Sequences another = new Sequences();
+        long last = sequences.of(personName).next();
+
+        assertThat(another.of(personName).next(), Matchers.greaterThan(last));
+        assertThat(new Sequences().of(personName).next(), Matchers.greaterThan(last));
+    }
+
+    @Test
+    public void threadsNeverGetTheSameNumber() throws Exception {
+        final Sequences.Sequence sequence = sequences.of(personName);
+        final int perThread = Sequences.BLOCK_SIZE * 3 + 1;
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<List<Long>>> futures = Lists.newArrayList();
+        for (int i = 0; i < 4; i++) {
+            futures.add(executor.submit(new Callable<List<Long>>() {
+                @Override
+                public List<Long> call() {
+                    List<Long> numbers = Lists.newArrayList();
+                    for (int j = 0; j < perThread; j++) {
+                        numbers.add(sequence.next());
+                    }
+                    return numbers;
+                }
+            }));
+        }
+        Set<Long> numbers = Sets.newHashSet();
+        for (Future<List<Long>> future : futures) {
+            numbers.addAll(future.get());
+        }
+        executor.shutdown();
+
+        assertThat(numbers, Matchers.hasSize(4 * perThread));
+    }
+
+    @Test
+    public void canReset() {
+        Sequences.Sequence sequence = sequences.of(personName);
+        sequence.next();
+        sequence.next();
+
+        sequences.reset();
+
+        assertThat(sequence.next(), Matchers.equalTo(1L));
+        assertThat(sequence.next(), Matchers.equalTo(2L));
+    }
+}
@@ -0,0 +1,68 @@
+package com.github.huangp.entityunit.util;
+
+import com.github.huangp.beans.Child;
+import com.github.huangp.beans.Parent;
+import com.github.huangp.entityunit.entity.EntityClass;
+import com.google.common.base.Predicate;
+import com.google.common.collect.Iterables;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Patrick Huang
+ */
+public class AccessorsTest {
+
+    @Test
+    public void propertyAccessorConvertsValueLikeBeanUtils() {
+        Accessor accessor = Accessors.bind(Child.class, settable(Child.class, "age"), false);
+        Child child = new Child();
+
+        accessor.set(child, 10L);
+
+        assertThat(child.getAge(), Matchers.equalTo(10));
+        assertThat(accessor.<Integer>get(child), Matchers.equalTo(10));
+    }
+
+    @Test
+    public void propertyAccessorIgnoresNonPublicSetter() {
+        Accessor accessor = Accessors.bind(Child.class, settable(Child.class, "id"), false);
+        Child child = new Child();
+
+        accessor.set(child, 1L);
+
+        assertThat(child.getId(), Matchers.nullValue());
+    }
+
+    @Test
+    public void fieldAccessorWritesFieldDirectly() {
+        Accessor accessor = Accessors.bind(Child.class, settable(Child.class, "id"), true);
+        Child child = new Child();
+
+        accessor.set(child, 1L);
+
+        assertThat(child.getId(), Matchers.equalTo(1L));
+    }
+
+    @Test
+    public void canReadAndWritePrimitiveField() throws NoSuchFieldException {
+        Accessor accessor = Accessors.ofField(Parent.class.getDeclaredField("age"));
+        Parent parent = new Parent();
+
+        accessor.set(parent, 42);
+
+        assertThat(parent.getAge(), Matchers.equalTo(42));
+        assertThat(accessor.<Integer>get(parent), Matchers.equalTo(42));
+    }
+
+    private static Settable settable(Class<?> type, final String name) {
+        return Iterables.find(EntityClass.from(type).getElements(), new Predicate<Settable>() {
+            @Override
+            public boolean apply(Settable input) {
+                return input.getSimpleName().equals(name);
+            }
+        });
+    }
+}
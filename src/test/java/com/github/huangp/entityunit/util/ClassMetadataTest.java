@@ -0,0 +1,75 @@
+package com.github.huangp.entityunit.util;
+
+import com.github.huangp.entityunit.entity.MetadataCache;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.zanata.model.HAccount;
+import org.zanata.model.HLocale;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Patrick Huang
+ */
+public class ClassMetadataTest {
+
+    @Test
+    public void metadataIsComputedOnce() {
+        assertThat(ClassMetadata.of(HAccount.class), Matchers.sameInstance(ClassMetadata.of(HAccount.class)));
+        assertThat(ClassMetadata.of(HAccount.class).getConstructor(),
+                Matchers.sameInstance(ClassMetadata.of(HAccount.class).getConstructor()));
+    }
+
+    @Test
+    public void metadataCacheCoversClassMetadata() {
+        ClassMetadata<HAccount> metadata = ClassMetadata.of(HAccount.class);
+        long hits = MetadataCache.classMetadataStats().hitCount();
+
+        assertThat(ClassMetadata.of(HAccount.class), Matchers.sameInstance(metadata));
+        assertThat(MetadataCache.classMetadataStats().hitCount(), Matchers.equalTo(hits + 1));
+        try {
+            MetadataCache.configure(1000);
+
+            assertThat(ClassMetadata.of(HAccount.class), Matchers.not(Matchers.sameInstance(metadata)));
+        } finally {
+            MetadataCache.configure(MetadataCache.DEFAULT_CAPACITY);
+        }
+    }
+
+    @Test
+    public void canGetIdentityAndConstructor() {
+        ClassMetadata<HLocale> metadata = ClassMetadata.of(HLocale.class);
+
+        assertThat(metadata.getIdentity().getSimpleName(), Matchers.equalTo("id"));
+        assertThat(metadata.getConstructorParameters(),
+                Matchers.hasSize(metadata.getConstructor().getParameterTypes().length));
+        assertThat(metadata.getPublicConstant().isPresent(), Matchers.is(false));
+    }
+
+    @Test
+    public void canFindPublicConstant() throws Exception {
+        ClassMetadata<Constant> metadata = ClassMetadata.of(Constant.class);
+
+        assertThat(metadata.getPublicConstant().isPresent(), Matchers.is(true));
+        assertThat(ClassUtil.tryFindPublicConstants(Constant.class, new Constant()).get(),
+                Matchers.sameInstance(Constant.INSTANCE));
+    }
+
+    @Test
+    public void introspectsOncePerClass() {
+        ClassMetadata<HAccount> metadata = ClassMetadata.of(HAccount.class);
+
+        assertThat(metadata.getProperties(), Matchers.sameInstance(metadata.getProperties()));
+        assertThat(metadata.getGetter("apiKey").getName(), Matchers.equalTo("getApiKey"));
+        assertThat(metadata.getSetter("apiKey").getName(), Matchers.equalTo("setApiKey"));
+        assertThat(metadata.getGetter("noSuchProperty"), Matchers.nullValue());
+        assertThat(metadata.findField("apiKey").isPresent(), Matchers.is(true));
+        // id is declared in super class
+        assertThat(metadata.findField("id").isPresent(), Matchers.is(true));
+        assertThat(metadata.getDeclaredProperties().containsKey("id"), Matchers.is(false));
+    }
+
+    static class Constant {
+        public static final Constant INSTANCE = new Constant();
+    }
+}